@@ -0,0 +1,80 @@
+package icepackai;
+
+import icepackai.CVRP.CvrpJkfdoctmp51N;
+import icepackai.CVRPTW.CvrptwAcyas3Nzweqb;
+import icepackai.IVR7.Ivr7Kt461V8Eoaif;
+import icepackai.IVR8.Ivr8Yni1C9K2Swof;
+import icepackai.IVRData.IvrdataO43E0Dvs78Zq;
+import icepackai.Matrix.MatrixVyv95N7Wchpl;
+import icepackai.NS3.Ns3Tbfvuwtge2Iq;
+import icepackai.TSP.TspMcvfz472Gty6;
+import icepackai.TSPTW.TsptwKcxbievqo879;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.protobuf.Parser;
+
+// The generated parsers for the messages of each model type. The apiHelper looks its parser up once
+// when it's constructed, so encoding and decoding never go through reflection. If you add a schema
+// of your own, register its messages here before creating an apiHelper for it.
+public class CodecRegistry {
+  private static final Map<String, Map<Class<?>, Parser<?>>> parsers =
+      new ConcurrentHashMap<String, Map<Class<?>, Parser<?>>>();
+
+  static {
+    register("tsp-mcvfz472gty6", TspMcvfz472Gty6.SolveRequest.class,
+        TspMcvfz472Gty6.SolveRequest.parser());
+    register("tsp-mcvfz472gty6", TspMcvfz472Gty6.SolutionResponse.class,
+        TspMcvfz472Gty6.SolutionResponse.parser());
+    register("tsptw-kcxbievqo879", TsptwKcxbievqo879.SolveRequest.class,
+        TsptwKcxbievqo879.SolveRequest.parser());
+    register("tsptw-kcxbievqo879", TsptwKcxbievqo879.SolutionResponse.class,
+        TsptwKcxbievqo879.SolutionResponse.parser());
+    register("matrix-vyv95n7wchpl", MatrixVyv95N7Wchpl.MatrixRequest.class,
+        MatrixVyv95N7Wchpl.MatrixRequest.parser());
+    register("matrix-vyv95n7wchpl", MatrixVyv95N7Wchpl.MatrixResponse.class,
+        MatrixVyv95N7Wchpl.MatrixResponse.parser());
+    register("cvrp-jkfdoctmp51n", CvrpJkfdoctmp51N.SolveRequest.class,
+        CvrpJkfdoctmp51N.SolveRequest.parser());
+    register("cvrp-jkfdoctmp51n", CvrpJkfdoctmp51N.SolutionResponse.class,
+        CvrpJkfdoctmp51N.SolutionResponse.parser());
+    register("cvrptw-acyas3nzweqb", CvrptwAcyas3Nzweqb.SolveRequest.class,
+        CvrptwAcyas3Nzweqb.SolveRequest.parser());
+    register("cvrptw-acyas3nzweqb", CvrptwAcyas3Nzweqb.SolutionResponse.class,
+        CvrptwAcyas3Nzweqb.SolutionResponse.parser());
+    register("ivr7-kt461v8eoaif", Ivr7Kt461V8Eoaif.SolveRequest.class,
+        Ivr7Kt461V8Eoaif.SolveRequest.parser());
+    register("ivr7-kt461v8eoaif", Ivr7Kt461V8Eoaif.SolutionResponse.class,
+        Ivr7Kt461V8Eoaif.SolutionResponse.parser());
+    register("ivr8-yni1c9k2swof", Ivr8Yni1C9K2Swof.SolveRequest.class,
+        Ivr8Yni1C9K2Swof.SolveRequest.parser());
+    register("ivr8-yni1c9k2swof", Ivr8Yni1C9K2Swof.SolutionResponse.class,
+        Ivr8Yni1C9K2Swof.SolutionResponse.parser());
+    register("ivrdata-o43e0dvs78zq", IvrdataO43E0Dvs78Zq.CachedModel.class,
+        IvrdataO43E0Dvs78Zq.CachedModel.parser());
+    register("ivrdata-o43e0dvs78zq", IvrdataO43E0Dvs78Zq.CachedTransitSet.class,
+        IvrdataO43E0Dvs78Zq.CachedTransitSet.parser());
+    register("ns3-tbfvuwtge2iq", Ns3Tbfvuwtge2Iq.SolveRequest.class,
+        Ns3Tbfvuwtge2Iq.SolveRequest.parser());
+    register("ns3-tbfvuwtge2iq", Ns3Tbfvuwtge2Iq.SolutionResponse.class,
+        Ns3Tbfvuwtge2Iq.SolutionResponse.parser());
+  }
+
+  public static <T> void register(String modelType, Class<T> type, Parser<T> parser) {
+    parsers.computeIfAbsent(modelType, k -> new ConcurrentHashMap<Class<?>, Parser<?>>())
+        .put(type, parser);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> Parser<T> parser(String modelType, Class<T> type) throws Exception {
+    Map<Class<?>, Parser<?>> forModel = parsers.get(modelType);
+    Parser<?> p = forModel == null ? null : forModel.get(type);
+    if (p == null) {
+      throw new Exception("no codec registered for " + type.getName() + " on model type \""
+          + modelType + "\". should be one of:"
+          + (forModel == null ? "[]" : forModel.keySet().toString()));
+    }
+    return (Parser<T>) p;
+  }
+}
@@ -0,0 +1,68 @@
+package icepackai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Controls payload compression between the apiHelper and the api. Responses are requested as
+// gzip/deflate by default (the server is free to ignore that and answer uncompressed). Uploads are
+// only compressed once you opt in by setting requestEncoding, and then only above
+// minRequestBytes: small solve requests aren't worth the cpu, large ivr7 models with embedded
+// transit sets usually shrink several times over.
+public class CompressionPolicy {
+  public CompressionPolicy() {}
+
+  // send Accept-Encoding: gzip, deflate and decode whatever comes back.
+  public boolean acceptCompressed = true;
+
+  // "gzip" or "deflate" to compress uploads; null sends them as-is.
+  public String requestEncoding = null;
+
+  public long minRequestBytes = 64 * 1024;
+
+  public String encodingFor(long length) {
+    return requestEncoding != null && length >= minRequestBytes ? requestEncoding : null;
+  }
+
+  static OutputStream encode(String encoding, OutputStream os) throws IOException {
+    switch (encoding.trim().toLowerCase()) {
+      case "gzip":
+        return new GZIPOutputStream(os, BUFFER_SIZE);
+      case "deflate":
+        return new DeflaterOutputStream(os);
+      default:
+        throw new IOException("unsupported request encoding: " + encoding);
+    }
+  }
+
+  static InputStream decode(String encoding, InputStream in) throws IOException {
+    if (encoding == null) {
+      return in;
+    }
+    switch (encoding.trim().toLowerCase()) {
+      case "identity":
+        return in;
+      case "gzip":
+      case "x-gzip":
+        // an empty body (e.g. an error with no content) has no gzip header to read.
+        PushbackInputStream pb = new PushbackInputStream(in, 1);
+        int b = pb.read();
+        if (b == -1) {
+          return pb;
+        }
+        pb.unread(b);
+        return new GZIPInputStream(pb, BUFFER_SIZE);
+      case "deflate":
+        return new InflaterInputStream(in);
+      default:
+        throw new IOException("unsupported response encoding: " + encoding);
+    }
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+}
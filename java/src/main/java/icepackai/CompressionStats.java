@@ -0,0 +1,69 @@
+package icepackai;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Payload sizes before and after compression, per model type. Every apiHelper for the same model
+// type reports into the same counters.
+public class CompressionStats {
+  private static final Map<String, CompressionStats> byModel =
+      new ConcurrentHashMap<String, CompressionStats>();
+
+  public static CompressionStats forModel(String modelType) {
+    return byModel.computeIfAbsent(modelType, CompressionStats::new);
+  }
+
+  public static Collection<CompressionStats> all() {
+    return byModel.values();
+  }
+
+  private CompressionStats(String modelType) {
+    this.modelType = modelType;
+  }
+
+  public final String modelType;
+
+  public void uploaded(long bytes, long wireBytes) {
+    uploadBytes.addAndGet(bytes);
+    uploadWireBytes.addAndGet(wireBytes);
+  }
+
+  public void downloaded(long bytes, long wireBytes) {
+    downloadBytes.addAndGet(bytes);
+    downloadWireBytes.addAndGet(wireBytes);
+  }
+
+  public long getUploadBytes() {
+    return uploadBytes.get();
+  }
+
+  public long getUploadWireBytes() {
+    return uploadWireBytes.get();
+  }
+
+  public long getDownloadBytes() {
+    return downloadBytes.get();
+  }
+
+  public long getDownloadWireBytes() {
+    return downloadWireBytes.get();
+  }
+
+  public long bytesSaved() {
+    return (uploadBytes.get() - uploadWireBytes.get())
+        + (downloadBytes.get() - downloadWireBytes.get());
+  }
+
+  @Override
+  public String toString() {
+    return modelType + ": sent " + uploadBytes.get() + " bytes (" + uploadWireBytes.get()
+        + " on the wire), received " + downloadBytes.get() + " bytes (" + downloadWireBytes.get()
+        + " on the wire), saved " + bytesSaved() + " bytes";
+  }
+
+  private final AtomicLong uploadBytes = new AtomicLong();
+  private final AtomicLong uploadWireBytes = new AtomicLong();
+  private final AtomicLong downloadBytes = new AtomicLong();
+  private final AtomicLong downloadWireBytes = new AtomicLong();
+}
@@ -1,9 +1,17 @@
 package icepackai;
 
+import java.util.Map;
+
 public class Config {
   public Config() {}
 
   public String apiToken;
 
   public String endpoint;
+
+  // optional: "urlconnection" (the default) or "httpclient" for http/2 multiplexing.
+  public String transport;
+
+  // optional: client-side limits keyed on the endpoint path in the models map (see RateLimit).
+  public Map<String, RateLimit> rateLimits;
 }
@@ -0,0 +1,56 @@
+package icepackai;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+
+// A sha-256 over a model type and the serialised bytes of a message. The message is serialised
+// straight into the digest (deterministically, so map fields hash the same way every time) and
+// never materialised as a byte array.
+public class ContentHash {
+  public static String of(String modelType, MessageLite message) throws IOException {
+    MessageDigest digest = sha256();
+    digest.update(modelType.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    CodedOutputStream out = CodedOutputStream.newInstance(
+        new DigestOutputStream(OutputStream.nullOutputStream(), digest), 64 * 1024);
+    out.useDeterministicSerialization();
+    message.writeTo(out);
+    out.flush();
+    return hex(digest.digest());
+  }
+
+  // the same for content that's already serialised (see EnvelopeCodec.input).
+  public static String of(String modelType, HttpTransport.BodyWriter content) throws IOException {
+    MessageDigest digest = sha256();
+    digest.update(modelType.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    content.writeTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+    return hex(digest.digest());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every jre ships sha-256.
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    char[] out = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      out[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+      out[2 * i + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(out);
+  }
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+}
@@ -0,0 +1,258 @@
+package icepackai;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Reads a csv file one line at a time through a fixed-size buffer, so files of any length can be
+// fed into a model without holding them in memory as strings. Fields are split on commas (quotes
+// are not interpreted, same as the String.split this replaces) and only converted on request:
+// getFloat parses straight from the bytes, getString is the only call that allocates.
+//   try (CsvReader csv = new CsvReader(path)) {
+//     int x = csv.column("X", "longitude");
+//     while (csv.next()) { ... csv.getFloat(x) ... }
+//   }
+// The first line is the header; blank lines are skipped.
+public class CsvReader implements Closeable {
+  public CsvReader(Path file) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    buffer.flip(); // starts empty
+    if (!readLine()) {
+      channel.close();
+      throw new IOException(file + " is empty");
+    }
+    header = new String[fields];
+    for (int i = 0; i < fields; i++) {
+      header[i] = unquote(getString(i).trim());
+    }
+  }
+
+  // the header names, with any surrounding quotes removed.
+  public String[] getHeader() {
+    return header.clone();
+  }
+
+  // the index of the first column whose header matches one of the names (ignoring case), or -1.
+  public int column(String... names) {
+    for (String name : names) {
+      for (int i = 0; i < header.length; i++) {
+        if (header[i].equalsIgnoreCase(name)) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  // moves to the next non-blank line; false at the end of the file.
+  public boolean next() throws IOException {
+    while (readLine()) {
+      if (fields > 1 || ends[0] > starts[0]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // number of fields on the current line.
+  public int fieldCount() {
+    return fields;
+  }
+
+  // 1-based, counting the header.
+  public long lineNumber() {
+    return lineNumber;
+  }
+
+  public String getString(int column) throws IOException {
+    check(column);
+    return new String(
+        buffer.array(), starts[column], ends[column] - starts[column], StandardCharsets.UTF_8);
+  }
+
+  public float getFloat(int column) throws IOException {
+    check(column);
+    return parseFloat(buffer.array(), starts[column], ends[column]);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // Float.parseFloat on the bytes in [start, end), without building a String for the common case
+  // (plain decimals up to 15 or so significant digits): the digits are gathered into a long and
+  // scaled by an exact power of ten in double precision, which is correctly rounded; narrowing that
+  // to float only goes wrong when it lands exactly half way between two floats, and those (like
+  // anything unusual - more digits, exponents past 22, NaN, hex) go to Float.parseFloat, so the
+  // result always matches it.
+  static float parseFloat(byte[] b, int start, int end) {
+    int i = start;
+    int e = end;
+    while (i < e && b[i] == ' ') {
+      i++;
+    }
+    while (e > i && b[e - 1] == ' ') {
+      e--;
+    }
+    boolean negative = false;
+    if (i < e && (b[i] == '-' || b[i] == '+')) {
+      negative = b[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean any = false;
+    for (; i < e && b[i] >= '0' && b[i] <= '9'; i++, any = true) {
+      if (digits == 18) {
+        return slowParse(b, start, end);
+      }
+      mantissa = mantissa * 10 + (b[i] - '0');
+      digits += mantissa == 0 ? 0 : 1;
+    }
+    if (i < e && b[i] == '.') {
+      for (i++; i < e && b[i] >= '0' && b[i] <= '9'; i++, any = true) {
+        if (digits == 18) {
+          return slowParse(b, start, end);
+        }
+        mantissa = mantissa * 10 + (b[i] - '0');
+        digits += mantissa == 0 ? 0 : 1;
+        exponent--;
+      }
+    }
+    if (any && i < e && (b[i] == 'e' || b[i] == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < e && (b[i] == '-' || b[i] == '+')) {
+        negativeExponent = b[i] == '-';
+        i++;
+      }
+      int exp = 0;
+      boolean anyExp = false;
+      for (; i < e && b[i] >= '0' && b[i] <= '9' && exp < 10000; i++, anyExp = true) {
+        exp = exp * 10 + (b[i] - '0');
+      }
+      if (!anyExp) {
+        return slowParse(b, start, end);
+      }
+      exponent += negativeExponent ? -exp : exp;
+    }
+    if (!any || i != e) {
+      return slowParse(b, start, end); // not a plain decimal; let the jdk parse (or reject) it.
+    }
+    if (mantissa == 0) {
+      return negative ? -0f : 0f;
+    }
+    if (mantissa >= TWO_POW_53 || exponent < -22 || exponent > 22) {
+      return slowParse(b, start, end);
+    }
+    // both operands are exact, so this one operation is correctly rounded.
+    double d = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+                            : mantissa * POWERS_OF_TEN[exponent];
+    if (d < Float.MIN_NORMAL || d > Float.MAX_VALUE
+        || (Double.doubleToRawLongBits(d) & 0x1FFFFFFFL) == 0x10000000L) {
+      return slowParse(b, start, end);
+    }
+    return (float) (negative ? -d : d);
+  }
+
+  private static float slowParse(byte[] b, int start, int end) {
+    return Float.parseFloat(new String(b, start, end - start, StandardCharsets.UTF_8));
+  }
+
+  private static String unquote(String s) {
+    if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
+      return s.substring(1, s.length() - 1);
+    }
+    return s;
+  }
+
+  private void check(int column) throws IOException {
+    if (column < 0 || column >= fields) {
+      throw new IOException(
+          file + " line " + lineNumber + " has " + fields + " fields, no field " + column);
+    }
+  }
+
+  // finds the next line in the buffer (reading more of the file as needed) and splits it.
+  private boolean readLine() throws IOException {
+    int newline = indexOf(buffer.array(), buffer.position(), buffer.limit(), (byte) '\n');
+    while (newline < 0 && !eof) {
+      // move the partial line to the front and fill up the rest, growing for very long lines.
+      int scanned = buffer.remaining();
+      buffer.compact();
+      if (!buffer.hasRemaining()) {
+        ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+      }
+      if (channel.read(buffer) < 0) {
+        eof = true;
+      }
+      buffer.flip();
+      newline = indexOf(buffer.array(), scanned, buffer.limit(), (byte) '\n');
+    }
+    byte[] b = buffer.array();
+    int start = buffer.position();
+    int end = newline < 0 ? buffer.limit() : newline;
+    if (newline < 0 && end == start) {
+      return false; // nothing left
+    }
+    buffer.position(newline < 0 ? end : newline + 1);
+    if (end > start && b[end - 1] == '\r') {
+      end--;
+    }
+    split(b, start, end);
+    lineNumber++;
+    return true;
+  }
+
+  private void split(byte[] b, int start, int end) {
+    fields = 0;
+    int fieldStart = start;
+    for (int i = start; i <= end; i++) {
+      if (i == end || b[i] == ',') {
+        if (fields == starts.length) {
+          starts = Arrays.copyOf(starts, fields * 2);
+          ends = Arrays.copyOf(ends, fields * 2);
+        }
+        starts[fields] = fieldStart;
+        ends[fields] = i;
+        fields++;
+        fieldStart = i + 1;
+      }
+    }
+  }
+
+  private static int indexOf(byte[] b, int from, int to, byte value) {
+    for (int i = from; i < to; i++) {
+      if (b[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long TWO_POW_53 = 1L << 53;
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+      1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  private final Path file;
+  private final FileChannel channel;
+  private final String[] header;
+  private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private boolean eof;
+  private long lineNumber;
+  private int fields;
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+}
@@ -0,0 +1,174 @@
+package icepackai;
+
+import icepackai.Matrix.MatrixVyv95N7Wchpl;
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDistanceUnit;
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDurationUnit;
+
+import java.nio.FloatBuffer;
+import java.util.*;
+
+// A square distance/duration matrix over a fixed list of location ids, stored as two flat row-major
+// float blocks instead of Float[][] (which boxes every element - roughly 6x the memory at a few
+// thousand locations). The id to index map is built once up front, so fill() only needs a hash
+// lookup when the source id changes (responses are grouped by source), not two per element.
+// The diagonal starts at zero and everything else at NaN until it's filled in, so missing elements
+// are easy to spot.
+public class DenseTransitMatrix {
+  public DenseTransitMatrix(
+      List<String> ids, eDistanceUnit distanceUnit, eDurationUnit durationUnit) throws Exception {
+    this(ids, distanceUnit, durationUnit, FloatBuffer.allocate(cells(ids.size())),
+        FloatBuffer.allocate(cells(ids.size())));
+    int n = ids.size();
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        float v = i == j ? 0f : Float.NaN;
+        distances.put(i * n + j, v);
+        durations.put(i * n + j, v);
+      }
+    }
+  }
+
+  // wraps existing blocks (n * n floats each, row-major) without copying them.
+  DenseTransitMatrix(List<String> ids, eDistanceUnit distanceUnit, eDurationUnit durationUnit,
+      FloatBuffer distances, FloatBuffer durations) throws Exception {
+    this.ids = Collections.unmodifiableList(new ArrayList<String>(ids));
+    this.distanceUnit = distanceUnit;
+    this.durationUnit = durationUnit;
+    this.index = new HashMap<String, Integer>(ids.size() * 2);
+    for (int i = 0; i < ids.size(); i++) {
+      if (index.put(ids.get(i), i) != null) {
+        throw new Exception("duplicate location id in matrix: " + ids.get(i));
+      }
+    }
+    long n = cells(ids.size());
+    if (distances.capacity() != n || durations.capacity() != n) {
+      throw new Exception("matrix blocks should hold " + n + " elements");
+    }
+    this.distances = distances;
+    this.durations = durations;
+  }
+
+  // a matrix over every location in the request, in the order they're listed.
+  public static DenseTransitMatrix of(MatrixVyv95N7Wchpl.MatrixRequest request) throws Exception {
+    List<String> ids = new ArrayList<String>(request.getLocationsCount());
+    for (MatrixVyv95N7Wchpl.Location l : request.getLocationsList()) {
+      ids.add(l.getId());
+    }
+    return new DenseTransitMatrix(ids, request.getDistanceUnit(), request.getDurationUnit());
+  }
+
+  // copies every element of the response in; the ids must all be in the matrix.
+  public DenseTransitMatrix fill(MatrixVyv95N7Wchpl.MatrixResponse response) throws Exception {
+    String lastFrom = null;
+    int row = 0;
+    int n = size();
+    for (MatrixVyv95N7Wchpl.MatrixResponse.Element e : response.getElementsList()) {
+      if (!e.getFromId().equals(lastFrom)) {
+        lastFrom = e.getFromId();
+        row = indexOf(lastFrom) * n;
+      }
+      int cell = row + indexOf(e.getToId());
+      distances.put(cell, e.getDistance());
+      durations.put(cell, e.getDuration());
+    }
+    return this;
+  }
+
+  public int size() {
+    return ids.size();
+  }
+
+  public List<String> getIds() {
+    return ids;
+  }
+
+  public eDistanceUnit getDistanceUnit() {
+    return distanceUnit;
+  }
+
+  public eDurationUnit getDurationUnit() {
+    return durationUnit;
+  }
+
+  public boolean contains(String id) {
+    return index.containsKey(id);
+  }
+
+  public int indexOf(String id) throws Exception {
+    Integer i = index.get(id);
+    if (i == null) {
+      throw new Exception("location id not in matrix: " + id);
+    }
+    return i;
+  }
+
+  public float distance(int from, int to) {
+    return distances.get(from * size() + to);
+  }
+
+  public float duration(int from, int to) {
+    return durations.get(from * size() + to);
+  }
+
+  public void set(int from, int to, float distance, float duration) {
+    distances.put(from * size() + to, distance);
+    durations.put(from * size() + to, duration);
+  }
+
+  // read-only views over a row; index 0 is the first destination.
+  public FloatBuffer distanceRow(int from) {
+    return row(distances, from);
+  }
+
+  public FloatBuffer durationRow(int from) {
+    return row(durations, from);
+  }
+
+  // columns aren't contiguous, so these copy into out (which needs size() elements).
+  public float[] distanceColumn(int to, float[] out) {
+    return column(distances, to, out);
+  }
+
+  public float[] durationColumn(int to, float[] out) {
+    return column(durations, to, out);
+  }
+
+  // the whole row-major blocks, read-only.
+  public FloatBuffer distances() {
+    return distances.asReadOnlyBuffer();
+  }
+
+  public FloatBuffer durations() {
+    return durations.asReadOnlyBuffer();
+  }
+
+  private FloatBuffer row(FloatBuffer block, int from) {
+    FloatBuffer b = block.asReadOnlyBuffer();
+    b.position(from * size());
+    b.limit(from * size() + size());
+    return b.slice();
+  }
+
+  private float[] column(FloatBuffer block, int to, float[] out) {
+    int n = size();
+    for (int i = 0; i < n; i++) {
+      out[i] = block.get(i * n + to);
+    }
+    return out;
+  }
+
+  private static int cells(int n) throws Exception {
+    long cells = (long) n * n;
+    if (cells > Integer.MAX_VALUE) {
+      throw new Exception("too many locations for a dense matrix: " + n);
+    }
+    return (int) cells;
+  }
+
+  private final List<String> ids;
+  private final Map<String, Integer> index;
+  private final eDistanceUnit distanceUnit;
+  private final eDurationUnit durationUnit;
+  private final FloatBuffer distances;
+  private final FloatBuffer durations;
+}
@@ -0,0 +1,105 @@
+package icepackai;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Paces the http requests sent to one endpoint, shared by every apiHelper in the process that
+// talks to it: a token bucket for the request rate, a cap on requests in flight, and a pause for
+// everyone when the server answers 429/503. Without this a tight loop of posts runs into the
+// server's rate limit, gets rejected and bursts again; with it, throughput settles at the quota.
+// Limits come from config.json (see RateLimit); with none configured the governor only pauses
+// after a 429.
+public class EndpointGovernor {
+  // how long to pause after a 429/503 that didn't say (in Retry-After).
+  public static final long DEFAULT_BACKOFF_MILLIS = 1000;
+
+  // how soon to try again when the endpoint is at its in-flight cap.
+  static final long IN_FLIGHT_RECHECK_MILLIS = 10;
+
+  public static EndpointGovernor forEndpoint(String endPoint) {
+    return governors.computeIfAbsent(endPoint, k -> new EndpointGovernor(k));
+  }
+
+  private EndpointGovernor(String endPoint) {
+    this.endPoint = endPoint;
+  }
+
+  // replaces the limits; requests already waiting pick the new ones up when they next try. The
+  // first limits start with a full bucket, so the first burst goes out at once; later ones keep
+  // what's left of the old bucket (up to the new burst).
+  public synchronized void configure(RateLimit limit) {
+    requestsPerSecond = Math.max(0, limit.requestsPerSecond);
+    burst = limit.burst > 0 ? limit.burst : Math.max(1, (int) Math.ceil(requestsPerSecond));
+    maxInFlight = Math.max(0, limit.maxInFlight);
+    tokens = configured ? Math.min(tokens, burst) : burst;
+    configured = true;
+  }
+
+  // Never blocks: takes a permit and returns 0 if the request may go out now (pair it with a
+  // release), otherwise takes nothing and returns how many milliseconds to wait before trying
+  // again - the rest of a pause, the time to the next token, or a short recheck while the endpoint
+  // is at its in-flight cap. Callers reschedule rather than park a thread, since the threads that
+  // send requests are shared with other endpoints.
+  public synchronized long tryAcquire() {
+    long now = System.nanoTime();
+    refill(now);
+    long waitNanos;
+    if (now < pausedUntil) {
+      waitNanos = pausedUntil - now;
+    } else if (maxInFlight > 0 && inFlight >= maxInFlight) {
+      waitNanos = IN_FLIGHT_RECHECK_MILLIS * 1000000;
+    } else if (requestsPerSecond > 0 && tokens < 1) {
+      waitNanos = (long) ((1 - tokens) / requestsPerSecond * 1e9);
+    } else {
+      if (requestsPerSecond > 0) {
+        tokens -= 1;
+      }
+      inFlight++;
+      requests++;
+      return 0;
+    }
+    return Math.max(1, (waitNanos + 999999) / 1000000);
+  }
+
+  public synchronized void release() {
+    inFlight--;
+  }
+
+  // the server pushed back: hold every request to this endpoint for a while (retryAfterMillis,
+  // or the default if the server didn't say) and start the bucket empty afterwards.
+  public synchronized void backOff(long retryAfterMillis) {
+    long millis = retryAfterMillis > 0 ? retryAfterMillis : DEFAULT_BACKOFF_MILLIS;
+    pausedUntil = Math.max(pausedUntil, System.nanoTime() + millis * 1000000);
+    tokens = 0;
+    backOffs++;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return endPoint + ": " + requests + " requests, " + backOffs + " back-offs, " + inFlight
+        + " in flight";
+  }
+
+  private void refill(long now) {
+    if (requestsPerSecond > 0) {
+      tokens = Math.min(burst, tokens + (now - lastRefill) * requestsPerSecond / 1e9);
+    }
+    lastRefill = now;
+  }
+
+  private static final Map<String, EndpointGovernor> governors =
+      new ConcurrentHashMap<String, EndpointGovernor>();
+
+  private final String endPoint;
+  private double requestsPerSecond;
+  private int burst = 1;
+  private int maxInFlight;
+  private boolean configured;
+
+  private double tokens = 1;
+  private long lastRefill = System.nanoTime();
+  private long pausedUntil = Long.MIN_VALUE;
+  private int inFlight;
+  private long requests;
+  private long backOffs;
+}
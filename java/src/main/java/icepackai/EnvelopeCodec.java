@@ -0,0 +1,166 @@
+package icepackai;
+
+import icepackai.problem.Problem;
+import icepackai.problem.Problem.ProblemEnvelope.SubType;
+
+import icepackai.problem.Problem.SolverInfo.SolverMessageType;
+import icepackai.problem.Problem.SolverResponse.SolveState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+
+// Reads and writes problem.ProblemEnvelope straight on the wire. Going through the generated
+// envelope means serialising the model to a byte array, copying it into a ByteString and then
+// serialising the envelope into a third array; for a large ivr7 model that's three copies of a
+// multi-megabyte payload on the heap. Here the envelope fields are written by hand and the model is
+// serialised directly into the connection's output stream.
+public class EnvelopeCodec {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // The parts of an output envelope's SolverResponse that the apiHelper cares about.
+  public static class Output<T> {
+    public SolveState state = SolveState.WIP;
+
+    // total number of log entries in the response, and the ones past the offset we were given.
+    public int logCount;
+    public List<Problem.SolverInfo> newLogs = new ArrayList<Problem.SolverInfo>();
+
+    public boolean hasSolution;
+    public T solution;
+
+    public boolean isFinished() {
+      if (state != SolveState.WIP) {
+        return true;
+      }
+      // an older error would already have finished the request, so only the new entries matter.
+      return !newLogs.isEmpty()
+          && newLogs.get(newLogs.size() - 1).getType() == SolverMessageType.ERROR;
+    }
+  }
+
+  // Parses an output envelope directly from the response stream: the SolverResponse is read in
+  // place inside the envelope's content field and the solution is parsed in place inside that, so
+  // nothing is buffered as an intermediate ByteString. Log entries before logsSeen have already
+  // been delivered and are skipped without being built. (Aliasing doesn't apply here; protobuf
+  // only aliases buffer-backed input, never a socket stream.)
+  public static <T> Output<T> readOutput(InputStream is, Parser<T> parser, int logsSeen)
+      throws IOException {
+    CodedInputStream in = CodedInputStream.newInstance(is, BUFFER_SIZE);
+    Output<T> out = new Output<T>();
+    int tag;
+    while ((tag = in.readTag()) != 0) {
+      if (tag == CONTENT_TAG) {
+        int limit = in.pushLimit(in.readRawVarint32());
+        readSolverResponse(in, parser, logsSeen, out);
+        in.popLimit(limit);
+      } else {
+        in.skipField(tag); // type and subType
+      }
+    }
+    return out;
+  }
+
+  private static <T> void readSolverResponse(
+      CodedInputStream in, Parser<T> parser, int logsSeen, Output<T> out) throws IOException {
+    int tag;
+    while ((tag = in.readTag()) != 0) {
+      if (tag == LOGS_TAG) {
+        if (out.logCount++ < logsSeen) {
+          in.skipField(tag);
+        } else {
+          out.newLogs.add(in.readMessage(
+              Problem.SolverInfo.parser(), ExtensionRegistryLite.getEmptyRegistry()));
+        }
+      } else if (tag == STATE_TAG) {
+        SolveState state = SolveState.forNumber(in.readEnum());
+        out.state = state == null ? SolveState.WIP : state;
+      } else if (tag == SOLUTION_TAG) {
+        out.hasSolution = true;
+        int limit = in.pushLimit(in.readRawVarint32());
+        out.solution = parser.parseFrom(in);
+        in.popLimit(limit);
+      } else {
+        in.skipField(tag);
+      }
+    }
+  }
+
+  private static int tag(int fieldNumber, int wireType) {
+    return (fieldNumber << 3) | wireType; // WireFormat.makeTag isn't public.
+  }
+
+  private static final int CONTENT_TAG = tag(
+      Problem.ProblemEnvelope.CONTENT_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int LOGS_TAG = tag(
+      Problem.SolverResponse.LOGS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+  private static final int STATE_TAG =
+      tag(Problem.SolverResponse.STATE_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+  private static final int SOLUTION_TAG = tag(
+      Problem.SolverResponse.SOLUTION_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+
+  public static HttpTransport.BodyWriter input(String modelType, MessageLite content) {
+    final int contentSize = content.getSerializedSize(); // memoised by the message.
+    final long length =
+        CodedOutputStream.computeStringSize(Problem.ProblemEnvelope.TYPE_FIELD_NUMBER, modelType)
+        + CodedOutputStream.computeEnumSize(
+            Problem.ProblemEnvelope.SUBTYPE_FIELD_NUMBER, SubType.INPUT_VALUE)
+        + CodedOutputStream.computeTagSize(Problem.ProblemEnvelope.CONTENT_FIELD_NUMBER)
+        + CodedOutputStream.computeUInt32SizeNoTag(contentSize) + contentSize;
+
+    return new HttpTransport.BodyWriter() {
+      public long length() {
+        return length;
+      }
+
+      public void writeTo(OutputStream os) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(os, BUFFER_SIZE);
+        out.writeString(Problem.ProblemEnvelope.TYPE_FIELD_NUMBER, modelType);
+        out.writeEnum(Problem.ProblemEnvelope.SUBTYPE_FIELD_NUMBER, SubType.INPUT_VALUE);
+        out.writeMessage(Problem.ProblemEnvelope.CONTENT_FIELD_NUMBER, content);
+        out.flush();
+      }
+    };
+  }
+
+  // The same envelope around content that's already serialised, e.g. a model streamed to a file by
+  // ModelWriter: the content is copied into the connection as it's written, never parsed.
+  public static HttpTransport.BodyWriter input(
+      String modelType, HttpTransport.BodyWriter content) throws IOException {
+    final long contentSize = content.length();
+    if (contentSize > Integer.MAX_VALUE) {
+      throw new IOException("content is over the 2GB protobuf message limit");
+    }
+    final long length =
+        CodedOutputStream.computeStringSize(Problem.ProblemEnvelope.TYPE_FIELD_NUMBER, modelType)
+        + CodedOutputStream.computeEnumSize(
+            Problem.ProblemEnvelope.SUBTYPE_FIELD_NUMBER, SubType.INPUT_VALUE)
+        + CodedOutputStream.computeTagSize(Problem.ProblemEnvelope.CONTENT_FIELD_NUMBER)
+        + CodedOutputStream.computeUInt32SizeNoTag((int) contentSize) + contentSize;
+
+    return new HttpTransport.BodyWriter() {
+      public long length() {
+        return length;
+      }
+
+      public void writeTo(OutputStream os) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(os, BUFFER_SIZE);
+        out.writeString(Problem.ProblemEnvelope.TYPE_FIELD_NUMBER, modelType);
+        out.writeEnum(Problem.ProblemEnvelope.SUBTYPE_FIELD_NUMBER, SubType.INPUT_VALUE);
+        out.writeTag(
+            Problem.ProblemEnvelope.CONTENT_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag((int) contentSize);
+        out.flush();
+        content.writeTo(os);
+      }
+    };
+  }
+}
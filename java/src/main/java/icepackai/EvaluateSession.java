@@ -0,0 +1,167 @@
+package icepackai;
+
+import icepackai.IVR7.Ivr7Kt461V8Eoaif;
+import icepackai.IVR7.Ivr7Kt461V8Eoaif.SolveRequest.SolveType;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+// What-if evaluation against a model that has already been uploaded (see ivr7_4_advanced1): each
+// candidate set of routes goes out as a small Evaluate request that references the model by id.
+// Built for interactive use, where edits arrive faster than evaluations come back:
+// * up to maxInFlight evaluations run at once, polled quickly on a dedicated helper;
+// * past that, only the newest candidate waits for a slot - older waiting ones are cancelled;
+// * when an evaluation comes back, any older ones still running are cancelled, since their
+//   answer is already out of date.
+// Cancelled futures complete with a CancellationException. Cancelling only stops the polling; the
+// api still evaluates whatever was already posted.
+public class EvaluateSession implements Closeable {
+  public EvaluateSession(String configFile, String modelId) throws Exception {
+    this(configFile, modelId, 2);
+  }
+
+  public EvaluateSession(String configFile, String modelId, int maxInFlight) throws Exception {
+    this.modelId = modelId;
+    this.maxInFlight = maxInFlight;
+    this.api = new apiHelper<Ivr7Kt461V8Eoaif.SolutionResponse>(
+        Ivr7Kt461V8Eoaif.SolutionResponse.class, "ivr7-kt461v8eoaif", configFile);
+    api.Polling = fastPolling();
+    api.LogListener = null; // one log per candidate is just noise here.
+  }
+
+  // evaluations take tens of milliseconds server side, so poll every 20ms for the first few polls
+  // and never back off past a quarter of a second.
+  public static PollingPolicy fastPolling() {
+    PollingPolicy p = new PollingPolicy();
+    p.firstIntervalMillis = 20;
+    p.fastPolls = 10;
+    p.backoffMultiplier = 1.5;
+    p.maxIntervalMillis = 250;
+    p.deadlineMillis = 30000;
+    return p;
+  }
+
+  // the helper the evaluations go through, e.g. for getMeanLatencyMillis().
+  public apiHelper<Ivr7Kt461V8Eoaif.SolutionResponse> getApi() {
+    return api;
+  }
+
+  public CompletableFuture<Ivr7Kt461V8Eoaif.SolutionResponse> evaluate(
+      List<Ivr7Kt461V8Eoaif.TaskSequence> routes) {
+    Ivr7Kt461V8Eoaif.SolveRequest request = Ivr7Kt461V8Eoaif.SolveRequest.newBuilder()
+                                                .setModelID(modelId)
+                                                .setSolveType(SolveType.Evaluate)
+                                                .addAllRoutes(routes)
+                                                .build();
+    Candidate c;
+    Candidate superseded = null;
+    synchronized (this) {
+      c = new Candidate(++sequence, request);
+      if (closed) {
+        c.result.completeExceptionally(new Exception("evaluate session is closed"));
+        return c.result;
+      }
+      if (inFlight.size() < maxInFlight) {
+        start(c);
+      } else {
+        superseded = waiting;
+        waiting = c;
+      }
+    }
+    // a caller cancelling the future should stop the polling too.
+    c.result.whenComplete((res, e) -> {
+      CompletableFuture<Ivr7Kt461V8Eoaif.SolutionResponse> remote = c.remote;
+      if (e instanceof CancellationException && remote != null) {
+        remote.cancel(false);
+      }
+    });
+    if (superseded != null) {
+      superseded.result.cancel(false);
+    }
+    return c.result;
+  }
+
+  // cancels everything still waiting or running.
+  @Override
+  public void close() {
+    List<Candidate> cancel = new ArrayList<Candidate>();
+    synchronized (this) {
+      closed = true;
+      cancel.addAll(inFlight);
+      if (waiting != null) {
+        cancel.add(waiting);
+      }
+      inFlight.clear();
+      waiting = null;
+    }
+    for (Candidate c : cancel) {
+      c.result.cancel(false);
+    }
+  }
+
+  // called with the lock held.
+  private void start(Candidate c) {
+    inFlight.add(c);
+    CompletableFuture<Ivr7Kt461V8Eoaif.SolutionResponse> remote = api.submit(c.request);
+    c.remote = remote;
+    if (c.result.isDone()) {
+      remote.cancel(false); // cancelled before it got a slot.
+    }
+    remote.whenComplete((res, e) -> finished(c, res, e));
+  }
+
+  private void finished(Candidate c, Ivr7Kt461V8Eoaif.SolutionResponse res, Throwable e) {
+    List<Candidate> stale = new ArrayList<Candidate>();
+    synchronized (this) {
+      inFlight.remove(c);
+      if (e == null) {
+        for (Iterator<Candidate> it = inFlight.iterator(); it.hasNext();) {
+          Candidate older = it.next();
+          if (older.sequence < c.sequence) {
+            stale.add(older);
+            it.remove();
+          }
+        }
+      }
+      if (waiting != null && !closed && inFlight.size() < maxInFlight) {
+        Candidate next = waiting;
+        waiting = null;
+        if (!next.result.isDone()) {
+          start(next);
+        }
+      }
+    }
+    for (Candidate older : stale) {
+      older.result.cancel(false);
+    }
+    if (e != null) {
+      c.result.completeExceptionally(e);
+    } else {
+      c.result.complete(res);
+    }
+  }
+
+  private static class Candidate {
+    Candidate(long sequence, Ivr7Kt461V8Eoaif.SolveRequest request) {
+      this.sequence = sequence;
+      this.request = request;
+    }
+
+    final long sequence;
+    final Ivr7Kt461V8Eoaif.SolveRequest request;
+    final CompletableFuture<Ivr7Kt461V8Eoaif.SolutionResponse> result =
+        new CompletableFuture<Ivr7Kt461V8Eoaif.SolutionResponse>();
+    volatile CompletableFuture<Ivr7Kt461V8Eoaif.SolutionResponse> remote;
+  }
+
+  private final apiHelper<Ivr7Kt461V8Eoaif.SolutionResponse> api;
+  private final String modelId;
+  private final int maxInFlight;
+
+  private long sequence;
+  private final List<Candidate> inFlight = new ArrayList<Candidate>();
+  private Candidate waiting;
+  private boolean closed;
+}
@@ -0,0 +1,164 @@
+package icepackai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HttpTransport over java.net.http.HttpClient. The client negotiates http/2 where the server
+// supports it, so concurrent posts and polls for different request ids are multiplexed as streams
+// over a handful of connections instead of each needing a connection (and tls handshake) of its
+// own. By default every transport shares one client so that multiplexing also spans apiHelpers.
+public class HttpClientTransport extends HttpTransport {
+  public HttpClientTransport(String apiToken, int maxConnections) {
+    this(apiToken, maxConnections, new CompressionPolicy(), null);
+  }
+
+  public HttpClientTransport(String apiToken, int maxConnections, CompressionPolicy compression,
+      CompressionStats stats) {
+    this(sharedClient(), apiToken, maxConnections, compression, stats);
+  }
+
+  public HttpClientTransport(HttpClient client, String apiToken, int maxConnections,
+      CompressionPolicy compression, CompressionStats stats) {
+    super(apiToken, maxConnections, compression, stats);
+    this.client = client;
+  }
+
+  @Override
+  protected <R> R exchange(String method, String url, BodyWriter body,
+      ResponseHandler<R> handler) throws IOException {
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+    for (Map.Entry<String, String> h : requestHeaders().entrySet()) {
+      request.header(h.getKey(), h.getValue());
+    }
+    long timeout = readTimeoutMillis;
+    if (body == null) {
+      request.method(method, HttpRequest.BodyPublishers.noBody());
+    } else {
+      // the client's timeout runs from the start of the request to the response headers, so allow
+      // for sending the body.
+      timeout += body.length() * 1000 / MIN_UPLOAD_BYTES_PER_SECOND;
+      String encoding = compression.encodingFor(body.length());
+      if (encoding == null) {
+        request.method(
+            method, HttpRequest.BodyPublishers.fromPublisher(publish(body, null), body.length()));
+      } else {
+        request.header("Content-Encoding", encoding);
+        request.method(method, HttpRequest.BodyPublishers.fromPublisher(publish(body, encoding)));
+      }
+    }
+    if (readTimeoutMillis > 0) {
+      request.timeout(Duration.ofMillis(timeout));
+    }
+    HttpResponse<InputStream> response;
+    try {
+      response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted waiting for a response from " + url);
+    }
+    Response res = new Response();
+    res.code = response.statusCode();
+    res.headers = response.headers().map();
+    return readResponse(res, response.body(), handler);
+  }
+
+  // The client pulls the body as ByteBuffers, while BodyWriter pushes it into an OutputStream. The
+  // body is written on a separate thread into a SubmissionPublisher, whose submit() blocks once
+  // BUFFERED_CHUNKS chunks are waiting; so at most a megabyte or so of an upload is held in memory,
+  // however large the model.
+  private Flow.Publisher<ByteBuffer> publish(BodyWriter body, String encoding) {
+    return subscriber -> {
+      SubmissionPublisher<ByteBuffer> publisher =
+          new SubmissionPublisher<ByteBuffer>(writers, BUFFERED_CHUNKS);
+      publisher.subscribe(subscriber);
+      writers.execute(() -> {
+        try {
+          writeBody(body, encoding, new OutputStream() {
+            private ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+
+            @Override
+            public void write(int b) {
+              if (!chunk.hasRemaining()) {
+                flushChunk();
+              }
+              chunk.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+              while (len > 0) {
+                if (!chunk.hasRemaining()) {
+                  flushChunk();
+                }
+                int n = Math.min(len, chunk.remaining());
+                chunk.put(b, off, n);
+                off += n;
+                len -= n;
+              }
+            }
+
+            @Override
+            public void close() {
+              flushChunk();
+            }
+
+            private void flushChunk() {
+              if (chunk.position() > 0) {
+                chunk.flip();
+                publisher.submit(chunk);
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+              }
+            }
+          });
+          publisher.close();
+        } catch (Throwable e) {
+          publisher.closeExceptionally(e);
+        }
+      });
+    };
+  }
+
+  // The connect timeout belongs to the client, so the shared client has the default
+  // connectTimeoutMillis; pass a client of your own for a different one.
+  private static synchronized HttpClient sharedClient() {
+    if (shared == null) {
+      shared = HttpClient.newBuilder()
+                   .version(HttpClient.Version.HTTP_2)
+                   .connectTimeout(Duration.ofMillis(DEFAULT_CONNECT_TIMEOUT_MILLIS))
+                   .build();
+    }
+    return shared;
+  }
+
+  private static HttpClient shared;
+
+  // the slowest upload the request timeout allows for (see exchange).
+  private static final long MIN_UPLOAD_BYTES_PER_SECOND = 64 * 1024;
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int BUFFERED_CHUNKS = 16;
+
+  // threads that serialise request bodies into the publishers.
+  private static final ExecutorService writers = Executors.newCachedThreadPool(new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "apiHelper-body-writer-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  });
+
+  private final HttpClient client;
+}
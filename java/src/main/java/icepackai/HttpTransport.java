@@ -0,0 +1,198 @@
+package icepackai;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+// The http plumbing used by the apiHelper. A transport can be shared by any number of threads;
+// the semaphore caps how many requests it has open at any one time. Subclasses only have to move
+// bytes: compression, byte counting and draining the response (so keep-alive connections can be
+// reused) all happen here. Pick an implementation with create(), or construct one yourself:
+// * UrlConnectionTransport - java.net.HttpURLConnection with the jdk keep-alive cache (http/1.1).
+// * HttpClientTransport - java.net.http.HttpClient, which multiplexes concurrent requests over a
+//   few http/2 connections.
+public abstract class HttpTransport {
+  public static final int DEFAULT_MAX_CONNECTIONS = 16;
+
+  // How long to wait for a connection, and for the api to answer once the request is sent; 0 waits
+  // forever. Running out of either is an io error the RetryPolicy retries, so a stalled socket
+  // doesn't hold a worker thread for good. Set them before the first request.
+  public int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+  public int readTimeoutMillis = 120000;
+
+  static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 30000;
+
+  public static class Response {
+    public int code;
+    public Map<String, List<String>> headers;
+    // only readable inside the response handler; whatever the handler leaves unread is drained
+    // afterwards so the connection can go back to the pool.
+    public InputStream body;
+
+    public String header(String name) {
+      for (Map.Entry<String, List<String>> h : headers.entrySet()) {
+        if (h.getKey() != null && h.getKey().equalsIgnoreCase(name) && !h.getValue().isEmpty()) {
+          return h.getValue().get(0);
+        }
+      }
+      return null;
+    }
+
+    // Retry-After as either delay-seconds or an http-date; 0 if absent or unreadable.
+    public long retryAfterMillis() {
+      String v = header("Retry-After");
+      if (v == null) {
+        return 0;
+      }
+      try {
+        return Math.max(0, Long.parseLong(v.trim()) * 1000);
+      } catch (NumberFormatException e) {
+        try {
+          ZonedDateTime at = ZonedDateTime.parse(v.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+          return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e2) {
+          return 0;
+        }
+      }
+    }
+
+    public String bodyString() throws IOException {
+      return IOUtils.toString(body, StandardCharsets.UTF_8);
+    }
+  }
+
+  public interface ResponseHandler<R> {
+    R handle(Response res) throws IOException;
+  }
+
+  // a request body that knows its length up front, so it can be streamed to the socket without the
+  // connection buffering it first.
+  public interface BodyWriter {
+    long length();
+
+    void writeTo(OutputStream os) throws IOException;
+  }
+
+  // kind is the "transport" value from config.json: "urlconnection" (the default) or "httpclient".
+  public static HttpTransport create(String kind, String apiToken, int maxConnections,
+      CompressionPolicy compression, CompressionStats stats) throws Exception {
+    if (kind == null || kind.isEmpty() || kind.equals("urlconnection")) {
+      return new UrlConnectionTransport(apiToken, maxConnections, compression, stats);
+    }
+    if (kind.equals("httpclient")) {
+      return new HttpClientTransport(apiToken, maxConnections, compression, stats);
+    }
+    throw new Exception(
+        "transport not recognised: \"" + kind + "\". should be one of:[urlconnection, httpclient]");
+  }
+
+  // stats may be null if you aren't interested in the compression counters.
+  protected HttpTransport(String apiToken, int maxConnections, CompressionPolicy compression,
+      CompressionStats stats) {
+    this.apiToken = apiToken;
+    this.compression = compression;
+    this.stats = stats;
+    this.permits = new Semaphore(maxConnections, true);
+  }
+
+  public <R> R post(String url, BodyWriter body, ResponseHandler<R> handler) throws IOException {
+    return send("POST", url, body, handler);
+  }
+
+  public <R> R get(String url, ResponseHandler<R> handler) throws IOException {
+    return send("GET", url, null, handler);
+  }
+
+  private <R> R send(String method, String url, BodyWriter body, ResponseHandler<R> handler)
+      throws IOException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted waiting for a connection to " + url);
+    }
+    try {
+      return exchange(method, url, body, handler);
+    } finally {
+      permits.release();
+    }
+  }
+
+  // send the request (body may be null) and hand the response to readResponse.
+  protected abstract <R> R exchange(String method, String url, BodyWriter body,
+      ResponseHandler<R> handler) throws IOException;
+
+  // the request headers every implementation sends.
+  protected Map<String, String> requestHeaders() {
+    Map<String, String> headers = new LinkedHashMap<String, String>();
+    headers.put("Content-Type", "application/protobuf");
+    headers.put("Authorization", "Apitoken " + apiToken);
+    if (compression.acceptCompressed) {
+      headers.put("Accept-Encoding", "gzip, deflate");
+    }
+    return headers;
+  }
+
+  // writes the body, through the request encoder if there is one, and counts both sides.
+  protected void writeBody(BodyWriter body, String encoding, OutputStream os) throws IOException {
+    if (encoding == null) {
+      try (OutputStream s = os) {
+        body.writeTo(s);
+      }
+      uploaded(body.length(), body.length());
+    } else {
+      CountingOutputStream wire = new CountingOutputStream(os);
+      try (OutputStream s = CompressionPolicy.encode(encoding, wire)) {
+        body.writeTo(s);
+      }
+      uploaded(body.length(), wire.getByteCount());
+    }
+  }
+
+  // decodes the response body, runs the handler and then drains and closes the stream; an
+  // undrained stream can't go back to the connection pool.
+  protected <R> R readResponse(Response res, InputStream in, ResponseHandler<R> handler)
+      throws IOException {
+    try (CountingInputStream wire =
+             new CountingInputStream(in == null ? new ByteArrayInputStream(new byte[0]) : in)) {
+      CountingInputStream s =
+          new CountingInputStream(CompressionPolicy.decode(res.header("Content-Encoding"), wire));
+      res.body = s;
+      R result = handler.handle(res);
+      IOUtils.skip(s, Long.MAX_VALUE);
+      IOUtils.skip(wire, Long.MAX_VALUE);
+      downloaded(s.getByteCount(), wire.getByteCount());
+      return result;
+    }
+  }
+
+  private void uploaded(long bytes, long wireBytes) {
+    if (stats != null) {
+      stats.uploaded(bytes, wireBytes);
+    }
+  }
+
+  private void downloaded(long bytes, long wireBytes) {
+    if (stats != null) {
+      stats.downloaded(bytes, wireBytes);
+    }
+  }
+
+  protected final CompressionPolicy compression;
+
+  private final String apiToken;
+  private final CompressionStats stats;
+  private final Semaphore permits;
+}
@@ -0,0 +1,34 @@
+package icepackai;
+
+import com.google.protobuf.ByteString;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Ids encoded to UTF-8 ByteStrings once and shared from then on. Handing a message the ByteString
+// (through the generated set*IdBytes setters) instead of the String means an id used by many
+// elements - the from and to ids of a transit set, the sites of ns3 lane rates - is encoded once
+// rather than every time a message holding it is serialised. Ids used once (a job, its tasks, the
+// location of each order) gain nothing from it and cost a map entry each, so the model helpers set
+// those as Strings. Safe to use from several threads.
+public class IdPool {
+  public ByteString get(String id) {
+    ByteString bytes = pool.get(id);
+    return bytes != null ? bytes : pool.computeIfAbsent(id, ByteString::copyFromUtf8);
+  }
+
+  // the parts one after another, e.g. join("lr:", src, "->", dest).
+  public ByteString join(String... parts) {
+    ByteString bytes = ByteString.EMPTY;
+    for (String part : parts) {
+      bytes = bytes.concat(get(part));
+    }
+    return bytes;
+  }
+
+  public int size() {
+    return pool.size();
+  }
+
+  private final ConcurrentHashMap<String, ByteString> pool =
+      new ConcurrentHashMap<String, ByteString>();
+}
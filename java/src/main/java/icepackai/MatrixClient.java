@@ -0,0 +1,317 @@
+package icepackai;
+
+import icepackai.Matrix.MatrixVyv95N7Wchpl;
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDistanceUnit;
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDurationUnit;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+// Requests distance/time matrices through the api, but only for the source/destination pairs that
+// aren't already in a MatrixElementCache. Large requests are split into tiles that are fetched
+// concurrently (an n x n request for a couple of thousand locations is millions of elements in a
+// single payload otherwise). Everything fetched is written back to the cache, and the cached and
+// fresh elements are merged into one response, so callers see what a plain MatrixRequest would
+// have returned - less the diagonal (from a location to itself), which is always left out, cached
+// or not, whether or not the api sends it. It's zero (DenseTransitMatrix starts it at zero).
+public class MatrixClient {
+  public MatrixClient(apiHelper<MatrixVyv95N7Wchpl.MatrixResponse> api) {
+    this(api, null);
+  }
+
+  // cache may be null, in which case every pair is fetched.
+  public MatrixClient(apiHelper<MatrixVyv95N7Wchpl.MatrixResponse> api, MatrixElementCache cache) {
+    this.api = api;
+    this.cache = cache;
+  }
+
+  // large requests are split into tiles of at most tileSize sources x tileSize destinations.
+  public int tileSize = 100;
+
+  public int maxConcurrentTiles = 8;
+
+  public int maxAttempts = 3;
+
+  // the same as get(), but laid out as a dense matrix over every location in the request.
+  public DenseTransitMatrix getDense(MatrixVyv95N7Wchpl.MatrixRequest request) throws Exception {
+    return DenseTransitMatrix.of(request).fill(get(request));
+  }
+
+  public MatrixVyv95N7Wchpl.MatrixResponse get(MatrixVyv95N7Wchpl.MatrixRequest request)
+      throws Exception {
+    Map<String, MatrixVyv95N7Wchpl.Location> locations =
+        new HashMap<String, MatrixVyv95N7Wchpl.Location>();
+    for (MatrixVyv95N7Wchpl.Location l : request.getLocationsList()) {
+      locations.put(l.getId(), l);
+    }
+    // no destinations means sources:sources.
+    List<String> sources = request.getSourcesList();
+    List<String> destinations =
+        request.getDestinationsCount() == 0 ? sources : request.getDestinationsList();
+    eDistanceUnit distanceUnit = request.getDistanceUnit();
+    eDurationUnit durationUnit = request.getDurationUnit();
+
+    // look every pair up, noting for each source which destinations it's missing. Sources missing
+    // exactly the same destinations are fetched together, so what's fetched is exactly what's
+    // missing: a new location, say, is one row of everything from it and one column of everything
+    // to it, rather than the whole matrix again.
+    int m = destinations.size();
+    BitSet cached = new BitSet(sources.size() * m);
+    List<String> missingSources = new ArrayList<String>();
+    List<BitSet> missingDestinations = new ArrayList<BitSet>();
+    List<BitSet> missingWithDiagonal = new ArrayList<BitSet>();
+    MatrixVyv95N7Wchpl.MatrixResponse.Builder merged =
+        MatrixVyv95N7Wchpl.MatrixResponse.newBuilder();
+    float[] value = new float[2];
+    for (int i = 0; i < sources.size(); i++) {
+      String from = sources.get(i);
+      BitSet missing = null;
+      int diagonal = -1;
+      for (int j = 0; j < m; j++) {
+        String to = destinations.get(j);
+        if (from.equals(to)) {
+          diagonal = j;
+          continue; // the diagonal is zero, and never in the response.
+        }
+        if (cache != null
+            && cache.get(geocode(locations, from), geocode(locations, to), distanceUnit,
+                durationUnit, value)) {
+          cached.set(i * m + j);
+          merged.addElements(MatrixVyv95N7Wchpl.MatrixResponse.Element.newBuilder()
+                                 .setFromId(from)
+                                 .setToId(to)
+                                 .setDistance(value[0])
+                                 .setDuration(value[1]));
+        } else {
+          if (missing == null) {
+            missing = new BitSet(m);
+          }
+          missing.set(j);
+        }
+      }
+      if (missing != null) {
+        BitSet withDiagonal = null;
+        if (diagonal >= 0) {
+          withDiagonal = (BitSet) missing.clone();
+          withDiagonal.set(diagonal);
+        }
+        missingSources.add(from);
+        missingDestinations.add(missing);
+        missingWithDiagonal.add(withDiagonal);
+      }
+    }
+    lastCachedElements = merged.getElementsCount();
+    lastFetchedElements = 0;
+    if (missingSources.isEmpty()) {
+      return merged.build();
+    }
+
+    // a source's own diagonal is never looked up, so it can go either way: with it, every row of a
+    // cold matrix misses every destination; without it, every old row of a warm matrix misses just
+    // the new one. Each source takes whichever of the two more sources share.
+    Map<BitSet, Integer> shared = new HashMap<BitSet, Integer>();
+    for (int k = 0; k < missingSources.size(); k++) {
+      shared.merge(missingDestinations.get(k), 1, Integer::sum);
+      if (missingWithDiagonal.get(k) != null) {
+        shared.merge(missingWithDiagonal.get(k), 1, Integer::sum);
+      }
+    }
+    Map<BitSet, List<String>> sourcesByMissing = new LinkedHashMap<BitSet, List<String>>();
+    for (int k = 0; k < missingSources.size(); k++) {
+      BitSet missing = missingDestinations.get(k);
+      BitSet withDiagonal = missingWithDiagonal.get(k);
+      if (withDiagonal != null && shared.get(withDiagonal) > shared.get(missing)) {
+        missing = withDiagonal;
+      }
+      sourcesByMissing.computeIfAbsent(missing, x -> new ArrayList<String>())
+          .add(missingSources.get(k));
+    }
+    List<Block> blocks = new ArrayList<Block>(sourcesByMissing.size());
+    for (Map.Entry<BitSet, List<String>> e : sourcesByMissing.entrySet()) {
+      List<String> blockDestinations = new ArrayList<String>(e.getKey().cardinality());
+      for (int j = e.getKey().nextSetBit(0); j >= 0; j = e.getKey().nextSetBit(j + 1)) {
+        blockDestinations.add(destinations.get(j));
+      }
+      blocks.add(new Block(e.getValue(), blockDestinations));
+    }
+    Map<String, Integer> sourceIndex = index(sources);
+    Map<String, Integer> destinationIndex = index(destinations);
+    for (MatrixVyv95N7Wchpl.MatrixResponse tile :
+        fetchTiles(blocks, locations, distanceUnit, durationUnit)) {
+      for (MatrixVyv95N7Wchpl.MatrixResponse.Element e : tile.getElementsList()) {
+        if (e.getFromId().equals(e.getToId())) {
+          continue; // left out of cached rows too, so the response is the same either way.
+        }
+        if (cache != null) {
+          cache.put(geocode(locations, e.getFromId()), geocode(locations, e.getToId()),
+              distanceUnit, durationUnit, e.getDistance(), e.getDuration());
+        }
+        Integer i = sourceIndex.get(e.getFromId());
+        Integer j = destinationIndex.get(e.getToId());
+        if (i != null && j != null && !cached.get(i * m + j)) {
+          merged.addElements(e);
+          lastFetchedElements++;
+        }
+      }
+    }
+    if (cache != null) {
+      cache.flush();
+    }
+    return merged.build();
+  }
+
+  // some sources, all missing the same destinations.
+  private static class Block {
+    Block(List<String> sources, List<String> destinations) {
+      this.sources = sources;
+      this.destinations = destinations;
+    }
+
+    final List<String> sources;
+    final List<String> destinations;
+  }
+
+  // Splits each block's sources x destinations into tiles of at most tileSize x tileSize, runs up
+  // to maxConcurrentTiles of them at once and retries a failed tile on its own (up to maxAttempts)
+  // rather than the whole matrix. The responses come back in tile order, whatever order the tiles
+  // finished in.
+  private List<MatrixVyv95N7Wchpl.MatrixResponse> fetchTiles(List<Block> blocks,
+      Map<String, MatrixVyv95N7Wchpl.Location> locations, eDistanceUnit distanceUnit,
+      eDurationUnit durationUnit) throws Exception {
+    List<CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse>> tiles =
+        new ArrayList<CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse>>();
+    Semaphore inFlight = new Semaphore(maxConcurrentTiles);
+    Submissions submissions = new Submissions();
+    try {
+      for (Block block : blocks) {
+        List<String> sources = block.sources;
+        List<String> destinations = block.destinations;
+        for (int r = 0; r < sources.size(); r += tileSize) {
+          List<String> tileSources = sources.subList(r, Math.min(r + tileSize, sources.size()));
+          for (int c = 0; c < destinations.size(); c += tileSize) {
+            List<String> tileDestinations =
+                destinations.subList(c, Math.min(c + tileSize, destinations.size()));
+            MatrixVyv95N7Wchpl.MatrixRequest.Builder tile =
+                MatrixVyv95N7Wchpl.MatrixRequest.newBuilder()
+                    .setDistanceUnit(distanceUnit)
+                    .setDurationUnit(durationUnit)
+                    .addAllSources(tileSources)
+                    .addAllDestinations(tileDestinations);
+            Set<String> used = new LinkedHashSet<String>(tileSources);
+            used.addAll(tileDestinations);
+            for (String id : used) {
+              tile.addLocations(locations.get(id));
+            }
+            inFlight.acquire();
+            CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse> f =
+                fetchTile(submissions, tile.build(), 1);
+            f.whenComplete((res, e) -> inFlight.release());
+            tiles.add(f);
+          }
+        }
+      }
+      List<MatrixVyv95N7Wchpl.MatrixResponse> responses =
+          new ArrayList<MatrixVyv95N7Wchpl.MatrixResponse>(tiles.size());
+      for (CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse> f : tiles) {
+        try {
+          responses.add(f.get());
+        } catch (ExecutionException e) {
+          throw new Exception(
+              "matrix tile failed after " + maxAttempts + " attempts", e.getCause());
+        }
+      }
+      return responses;
+    } finally {
+      submissions.cancelAll(); // no-op for finished tiles; stops the rest if we bailed out.
+    }
+  }
+
+  // Every api.submit future of one fetchTiles, retries included. Cancelling the futures derived
+  // from them wouldn't reach the requests, so these are what gets cancelled; that stops submit
+  // posting or polling them. Once cancelled, no more attempts are submitted.
+  private class Submissions {
+    synchronized CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse> submit(
+        MatrixVyv95N7Wchpl.MatrixRequest tile) {
+      CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse> f;
+      if (cancelled) {
+        f = new CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse>();
+        f.cancel(false);
+      } else {
+        f = api.submit(tile);
+        submitted.add(f);
+      }
+      return f;
+    }
+
+    synchronized boolean isCancelled() {
+      return cancelled;
+    }
+
+    synchronized void cancelAll() {
+      cancelled = true;
+      for (CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse> f : submitted) {
+        f.cancel(false);
+      }
+    }
+
+    private final List<CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse>> submitted =
+        new ArrayList<CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse>>();
+    private boolean cancelled;
+  }
+
+  private CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse> fetchTile(
+      Submissions submissions, MatrixVyv95N7Wchpl.MatrixRequest tile, int attempt) {
+    return submissions.submit(tile)
+        .thenApply(res -> {
+          if (res == null) {
+            throw new CompletionException(new Exception("matrix tile returned no solution"));
+          }
+          return CompletableFuture.completedFuture(res);
+        })
+        .exceptionally(e -> {
+          if (attempt >= maxAttempts || submissions.isCancelled()) {
+            CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse> failed =
+                new CompletableFuture<MatrixVyv95N7Wchpl.MatrixResponse>();
+            failed.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+            return failed;
+          }
+          System.out.println("Retrying matrix tile (attempt " + (attempt + 1) + "): " + e);
+          return fetchTile(submissions, tile, attempt + 1);
+        })
+        .thenCompose(f -> f);
+  }
+
+  // how the last request was served.
+  public int getLastCachedElements() {
+    return lastCachedElements;
+  }
+
+  public int getLastFetchedElements() {
+    return lastFetchedElements;
+  }
+
+  private static MatrixVyv95N7Wchpl.Geocode geocode(
+      Map<String, MatrixVyv95N7Wchpl.Location> locations, String id) throws Exception {
+    MatrixVyv95N7Wchpl.Location l = locations.get(id);
+    if (l == null) {
+      throw new Exception("matrix request references unknown location: \"" + id + "\"");
+    }
+    return l.getGeocode();
+  }
+
+  private static Map<String, Integer> index(List<String> ids) {
+    Map<String, Integer> index = new HashMap<String, Integer>();
+    for (int i = 0; i < ids.size(); i++) {
+      index.put(ids.get(i), i);
+    }
+    return index;
+  }
+
+  private final apiHelper<MatrixVyv95N7Wchpl.MatrixResponse> api;
+  private final MatrixElementCache cache;
+  private int lastCachedElements;
+  private int lastFetchedElements;
+}
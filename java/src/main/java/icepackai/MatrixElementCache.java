@@ -0,0 +1,203 @@
+package icepackai;
+
+import icepackai.Matrix.MatrixVyv95N7Wchpl;
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDistanceUnit;
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDurationUnit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// A persistent cache of matrix elements, keyed on (from geocode, to geocode, distance unit,
+// duration unit). Keys are geocodes rather than ids so the same pair is found whatever a location
+// happens to be called in a given request.
+//
+// The cache is an open-addressing hash table in a memory-mapped file, so opening it costs nothing
+// regardless of size and lookups don't allocate. Layout:
+//   header: magic, version, capacity (a power of two), size - 4 ints
+//   slots:  fromLon, fromLat, toLon, toLat (float bits, see bits()), units (int, top bit marks
+//           the slot as used), distance, duration (floats), padding - 32 bytes each
+// The table doubles (into a new file which then replaces the old one) past 70% load, up to 2^25
+// slots. One process at a time; access within a process is synchronised.
+public class MatrixElementCache implements Closeable {
+  public MatrixElementCache(Path file) throws IOException {
+    this.file = file;
+    if (Files.exists(file) && Files.size(file) >= HEADER_BYTES) {
+      map(file);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException(file + " is not a matrix element cache");
+      }
+      capacity = buffer.getInt(8);
+      size = buffer.getInt(12);
+      // a bad header would send lookups outside the mapping (or into a loop on a full table).
+      if (capacity <= 0 || Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY
+          || bytes(capacity) > buffer.capacity() || size < 0 || size >= capacity) {
+        throw new IOException(file + " is corrupt: capacity " + capacity + ", size " + size
+            + " in " + buffer.capacity() + " bytes");
+      }
+    } else {
+      create(file, INITIAL_CAPACITY);
+    }
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  // writes the element's distance and duration to out[0] and out[1]; false if it isn't cached.
+  public synchronized boolean get(MatrixVyv95N7Wchpl.Geocode from, MatrixVyv95N7Wchpl.Geocode to,
+      eDistanceUnit distanceUnit, eDurationUnit durationUnit, float[] out) {
+    int units = units(distanceUnit, durationUnit);
+    int slot = find(buffer, capacity, bits(from.getLongitude()), bits(from.getLatitude()),
+        bits(to.getLongitude()), bits(to.getLatitude()), units);
+    int pos = offset(slot);
+    if (buffer.getInt(pos + 16) == 0) {
+      return false;
+    }
+    out[0] = buffer.getFloat(pos + 20);
+    out[1] = buffer.getFloat(pos + 24);
+    return true;
+  }
+
+  public synchronized void put(MatrixVyv95N7Wchpl.Geocode from, MatrixVyv95N7Wchpl.Geocode to,
+      eDistanceUnit distanceUnit, eDurationUnit durationUnit, float distance, float duration)
+      throws IOException {
+    if ((size + 1) * 10L > capacity * 7L) {
+      grow();
+    }
+    if (insert(buffer, capacity, bits(from.getLongitude()), bits(from.getLatitude()),
+            bits(to.getLongitude()), bits(to.getLatitude()), units(distanceUnit, durationUnit),
+            distance, duration)) {
+      size++;
+      buffer.putInt(12, size);
+    }
+  }
+
+  public synchronized void flush() {
+    buffer.force();
+  }
+
+  @Override
+  public synchronized void close() {
+    flush();
+  }
+
+  private static int units(eDistanceUnit distanceUnit, eDurationUnit durationUnit) {
+    return USED | (distanceUnit.getNumber() << 8) | durationUnit.getNumber();
+  }
+
+  // A coordinate as it's hashed, compared and stored: -0 is the same place as 0, and every NaN is
+  // the same key (== would never find a NaN, and would match -0 to a 0 hashed elsewhere).
+  private static int bits(float coordinate) {
+    return Float.floatToIntBits(coordinate == 0 ? 0f : coordinate);
+  }
+
+  // computed as a long; MAX_CAPACITY keeps every slot of a table within one mapping's int range.
+  private static int offset(int slot) {
+    return Math.toIntExact(bytes(slot));
+  }
+
+  // the bytes before slot, i.e. the file size of a table with that many slots.
+  private static long bytes(int slots) {
+    return HEADER_BYTES + (long) slots * SLOT_BYTES;
+  }
+
+  // the slot holding this key, or the empty slot where it would go.
+  private static int find(MappedByteBuffer b, int capacity, int fromLon, int fromLat, int toLon,
+      int toLat, int units) {
+    int h = fromLon;
+    h = 31 * h + fromLat;
+    h = 31 * h + toLon;
+    h = 31 * h + toLat;
+    h = 31 * h + units;
+    h ^= h >>> 16;
+    int mask = capacity - 1;
+    // fibonacci hashing: take the slot from the high bits of the product.
+    int shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    for (int slot = (h * 0x9E3779B9) >>> shift;; slot = (slot + 1) & mask) {
+      int pos = offset(slot);
+      int used = b.getInt(pos + 16);
+      if (used == 0
+          || (used == units && b.getInt(pos) == fromLon && b.getInt(pos + 4) == fromLat
+              && b.getInt(pos + 8) == toLon && b.getInt(pos + 12) == toLat)) {
+        return slot;
+      }
+    }
+  }
+
+  // true if this added a new key (rather than updating an existing one).
+  private static boolean insert(MappedByteBuffer b, int capacity, int fromLon, int fromLat,
+      int toLon, int toLat, int units, float distance, float duration) {
+    int pos = offset(find(b, capacity, fromLon, fromLat, toLon, toLat, units));
+    boolean added = b.getInt(pos + 16) == 0;
+    b.putInt(pos, fromLon);
+    b.putInt(pos + 4, fromLat);
+    b.putInt(pos + 8, toLon);
+    b.putInt(pos + 12, toLat);
+    b.putInt(pos + 16, units);
+    b.putFloat(pos + 20, distance);
+    b.putFloat(pos + 24, duration);
+    return added;
+  }
+
+  private void grow() throws IOException {
+    if (capacity >= MAX_CAPACITY) {
+      throw new IOException(file + " is full (" + size + " elements)");
+    }
+    Path tmp = file.resolveSibling(file.getFileName() + ".grow");
+    MappedByteBuffer old = buffer;
+    int oldCapacity = capacity;
+    create(tmp, capacity * 2);
+    for (int slot = 0; slot < oldCapacity; slot++) {
+      int pos = offset(slot);
+      int units = old.getInt(pos + 16);
+      if (units != 0) {
+        insert(buffer, capacity, old.getInt(pos), old.getInt(pos + 4), old.getInt(pos + 8),
+            old.getInt(pos + 12), units, old.getFloat(pos + 20), old.getFloat(pos + 24));
+      }
+    }
+    buffer.putInt(12, size);
+    buffer.force();
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void create(Path path, int newCapacity) throws IOException {
+    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+             StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+             StandardOpenOption.WRITE)) {
+      buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes(newCapacity));
+    }
+    capacity = newCapacity;
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, capacity);
+    buffer.putInt(12, size);
+  }
+
+  private void map(Path path) throws IOException {
+    try (FileChannel ch =
+             FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+    }
+  }
+
+  private static final int MAGIC = 0x4d454331; // "MEC1"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final int SLOT_BYTES = 32;
+  private static final int INITIAL_CAPACITY = 1 << 12;
+  // a single mapping tops out at 2GB, so the largest power of two for which the header and every
+  // slot fit below Integer.MAX_VALUE: 16 + 2^25 * 32 bytes (another doubling would be 2GB + 16).
+  private static final int MAX_CAPACITY = 1 << 25;
+  private static final int USED = 1 << 31;
+
+  private final Path file;
+  private MappedByteBuffer buffer;
+  private int capacity;
+  private int size;
+}
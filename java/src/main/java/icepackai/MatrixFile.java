@@ -0,0 +1,110 @@
+package icepackai;
+
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDistanceUnit;
+import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDurationUnit;
+
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Saves a DenseTransitMatrix to disk so another process (building a TransitSet, say) can reuse it
+// without requesting the matrix again or parsing a response. Layout, all big-endian:
+//   header:    magic, version, n, distance unit, duration unit, id section length - 6 ints
+//   ids:       n x (length int, utf-8 bytes), zero padded to a multiple of 8 bytes
+//   distances: n * n floats, row-major
+//   durations: n * n floats, row-major
+// Both directions go through FileChannel.map; read() wraps the mapped float blocks directly, so
+// opening a matrix only costs reading the ids.
+public class MatrixFile {
+  public static void write(DenseTransitMatrix matrix, Path file) throws Exception {
+    List<byte[]> ids = new ArrayList<byte[]>(matrix.size());
+    long idBytes = 0;
+    for (String id : matrix.getIds()) {
+      byte[] b = id.getBytes(StandardCharsets.UTF_8);
+      ids.add(b);
+      idBytes += 4 + b.length;
+    }
+    idBytes = (idBytes + 7) & ~7L;
+    long blockBytes = 4L * matrix.size() * matrix.size();
+    long total = HEADER_BYTES + idBytes + 2 * blockBytes;
+    if (total > Integer.MAX_VALUE) {
+      throw new Exception("matrix too large to map into a single file: " + total + " bytes");
+    }
+
+    // write next to the target and move it into place, so readers never see half a file.
+    Path tmp = Paths.get(file.toString() + ".tmp");
+    try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+             StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+             StandardOpenOption.WRITE)) {
+      MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 0, total);
+      b.putInt(MAGIC);
+      b.putInt(VERSION);
+      b.putInt(matrix.size());
+      b.putInt(matrix.getDistanceUnit().getNumber());
+      b.putInt(matrix.getDurationUnit().getNumber());
+      b.putInt((int) idBytes);
+      for (byte[] id : ids) {
+        b.putInt(id.length);
+        b.put(id);
+      }
+      b.position((int) (HEADER_BYTES + idBytes));
+      b.asFloatBuffer().put(matrix.distances());
+      b.position((int) (HEADER_BYTES + idBytes + blockBytes));
+      b.asFloatBuffer().put(matrix.durations());
+      b.force();
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // the returned matrix is a read-only view of the file; set() on it will throw.
+  public static DenseTransitMatrix read(Path file) throws Exception {
+    MappedByteBuffer b;
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (ch.size() < HEADER_BYTES || ch.size() > Integer.MAX_VALUE) {
+        throw new Exception(file + " is not a matrix file");
+      }
+      b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()); // stays valid after the close
+    }
+    if (b.getInt() != MAGIC) {
+      throw new Exception(file + " is not a matrix file");
+    }
+    int version = b.getInt();
+    if (version != VERSION) {
+      throw new Exception(file + " has unsupported matrix file version " + version);
+    }
+    int n = b.getInt();
+    eDistanceUnit distanceUnit = eDistanceUnit.forNumber(b.getInt());
+    eDurationUnit durationUnit = eDurationUnit.forNumber(b.getInt());
+    long idBytes = b.getInt();
+    long blockBytes = 4L * n * n;
+    if (n < 0 || distanceUnit == null || durationUnit == null
+        || HEADER_BYTES + idBytes + 2 * blockBytes != b.capacity()) {
+      throw new Exception(file + " is truncated or corrupt");
+    }
+
+    List<String> ids = new ArrayList<String>(n);
+    for (int i = 0; i < n; i++) {
+      byte[] id = new byte[b.getInt()];
+      b.get(id);
+      ids.add(new String(id, StandardCharsets.UTF_8));
+    }
+    b.position((int) (HEADER_BYTES + idBytes));
+    b.limit((int) (HEADER_BYTES + idBytes + blockBytes));
+    FloatBuffer distances = b.slice().asFloatBuffer();
+    b.limit(b.capacity());
+    b.position((int) (HEADER_BYTES + idBytes + blockBytes));
+    FloatBuffer durations = b.slice().asFloatBuffer();
+    return new DenseTransitMatrix(ids, distanceUnit, durationUnit, distances, durations);
+  }
+
+  private static final int MAGIC = 0x4d545831; // "MTX1"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 24;
+}
@@ -0,0 +1,333 @@
+package icepackai;
+
+import icepackai.IVR7.Ivr7Kt461V8Eoaif;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.WireFormat;
+
+// Writes an ivr7 Model to a stream a record at a time, without ever holding the whole model. A
+// Model on the wire is just its records one after another (each tagged with its field number), so
+// records written here in turn read back exactly as the Model they'd have been added to. The bulk
+// records - locations and jobs from an OrderTable, the transits of a TransitSetBuilder - are
+// encoded field by field, with no builders or messages in between, each id encoded once for both
+// sizing and writing; anything else (vehicles, cost classes, rules, ...) is written from its
+// message, which is small.
+//   try (ModelWriter w = ModelWriter.create(path)) {
+//     w.writeDimensions(dims);
+//     w.writeLocations(table);
+//     w.writeJobs(table, srcs, dests);
+//     ...
+//   }
+// Writing the records in field order (dimensions, locations, jobs, vehicles, vehicle classes, cost
+// classes, transit rules, transit generators, task sequences) gives the same bytes as
+// Model.toByteArray; any order parses to the same model. The dimensions are required.
+// A model written to a file is posted without reading it back into a Model: solveRequest(file,
+// request) goes to the ivr7 apiHelper's Post/submit/solve, cachedModel(file) to the ivrdata
+// helper's upload, and either streams the file into the request.
+public class ModelWriter implements Closeable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public ModelWriter(OutputStream os) {
+    this.os = os;
+    this.out = CodedOutputStream.newInstance(os, BUFFER_SIZE);
+  }
+
+  public static ModelWriter create(Path file) throws IOException {
+    return new ModelWriter(Files.newOutputStream(file));
+  }
+
+  // request (solve type, model id, ...) with the model written to file as its model; whatever
+  // model request has is dropped. The file is read each time the body is written.
+  public static HttpTransport.BodyWriter solveRequest(
+      Path file, Ivr7Kt461V8Eoaif.SolveRequest request) throws IOException {
+    return withModel(file, request.toBuilder().clearModel().buildPartial().toByteArray());
+  }
+
+  // an ivrdata CachedModel holding the model written to file, for upload.
+  public static HttpTransport.BodyWriter cachedModel(Path file) throws IOException {
+    return withModel(file, new byte[0]);
+  }
+
+  // The model as field 1 (SolveRequest.model and CachedModel.model both are), followed by the rest
+  // of the message. Field 1 comes first in toByteArray too, so the bytes are the same.
+  private static HttpTransport.BodyWriter withModel(Path file, byte[] rest) throws IOException {
+    final long model = Files.size(file);
+    if (model > Integer.MAX_VALUE) {
+      throw new IOException(file + " is over the 2GB protobuf message limit");
+    }
+    final long length = CodedOutputStream.computeTagSize(MODEL_FIELD_NUMBER)
+        + CodedOutputStream.computeUInt32SizeNoTag((int) model) + model + rest.length;
+    return new HttpTransport.BodyWriter() {
+      public long length() {
+        return length;
+      }
+
+      public void writeTo(OutputStream os) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(os, 16);
+        out.writeTag(MODEL_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag((int) model);
+        out.flush();
+        Files.copy(file, os);
+        os.write(rest);
+      }
+    };
+  }
+
+  public ModelWriter writeDimensions(Ivr7Kt461V8Eoaif.DimensionConfiguration dimensions)
+      throws IOException {
+    out.writeMessage(Ivr7Kt461V8Eoaif.Model.DIMENSIONS_FIELD_NUMBER, dimensions);
+    hasDimensions = true;
+    return this;
+  }
+
+  public ModelWriter writeLocation(Ivr7Kt461V8Eoaif.Location location) throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.LOCATIONS_FIELD_NUMBER, location);
+  }
+
+  // a location with just a geocode.
+  public ModelWriter writeLocation(String id, float longitude, float latitude) throws IOException {
+    return writeLocation(ByteString.copyFromUtf8(id), longitude, latitude);
+  }
+
+  public ModelWriter writeLocation(ByteString id, float longitude, float latitude)
+      throws IOException {
+    int geocode = CodedOutputStream.computeFloatSize(
+                      Ivr7Kt461V8Eoaif.Geocode.LONGITUDE_FIELD_NUMBER, longitude)
+        + CodedOutputStream.computeFloatSize(
+            Ivr7Kt461V8Eoaif.Geocode.LATITUDE_FIELD_NUMBER, latitude);
+    int location =
+        CodedOutputStream.computeBytesSize(Ivr7Kt461V8Eoaif.Location.ID_FIELD_NUMBER, id)
+        + nestedSize(Ivr7Kt461V8Eoaif.Location.GEOCODE_FIELD_NUMBER, geocode);
+    startNested(Ivr7Kt461V8Eoaif.Model.LOCATIONS_FIELD_NUMBER, location);
+    out.writeBytes(Ivr7Kt461V8Eoaif.Location.ID_FIELD_NUMBER, id);
+    startNested(Ivr7Kt461V8Eoaif.Location.GEOCODE_FIELD_NUMBER, geocode);
+    out.writeFloat(Ivr7Kt461V8Eoaif.Geocode.LONGITUDE_FIELD_NUMBER, longitude);
+    out.writeFloat(Ivr7Kt461V8Eoaif.Geocode.LATITUDE_FIELD_NUMBER, latitude);
+    return this;
+  }
+
+  // the same locations as ivr7helper.makeLocations(m, d).
+  public ModelWriter writeLocations(OrderTable d) throws IOException {
+    for (int i = 0; i < d.size(); i++) {
+      writeLocation(d.id(i), d.x(i), d.y(i));
+    }
+    return this;
+  }
+
+  // the same locations as ivr7helper.makeLocations(m, d, windowStart, windowEnd).
+  public ModelWriter writeLocations(OrderTable d, float windowStart, float windowEnd)
+      throws IOException {
+    if (windowEnd == 0.0f && windowStart == 0.0f) {
+      return writeLocations(d);
+    }
+    for (int i = 0; i < d.size(); i++) {
+      writeLocation(ivr7helper.makeLocation(d, i, windowStart, windowEnd));
+    }
+    return this;
+  }
+
+  public ModelWriter writeJob(Ivr7Kt461V8Eoaif.Job job) throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.JOBS_FIELD_NUMBER, job);
+  }
+
+  // the job ivr7helper.makeJob(d, si, di) builds.
+  public ModelWriter writeJob(OrderTable d, int si, int di) throws IOException {
+    return writeJob(d.id(di), d.id(si), d.pickupTime(di), d.dropoffTime(di), d.quantity(di));
+  }
+
+  // the job ivr7helper.makeJob(id, fromId, pickupTime, dropoffTime, quantity) builds.
+  public ModelWriter writeJob(String id, String fromId, float pickupTime, float dropoffTime,
+      float quantity) throws IOException {
+    ByteString jobId = ByteString.copyFromUtf8(ivr7helper.JOB_ID_PREFIX + id);
+    ByteString pickupId = ByteString.copyFromUtf8(ivr7helper.PICKUP_ID_PREFIX + id);
+    ByteString dropoffId = ByteString.copyFromUtf8(ivr7helper.DROPOFF_ID_PREFIX + id);
+    ByteString from = ByteString.copyFromUtf8(fromId);
+    ByteString to = ByteString.copyFromUtf8(id);
+    int pickup = taskSize(pickupId, from, JOB_TIME, pickupTime, JOB_CAPACITY, quantity);
+    int dropoff = taskSize(dropoffId, to, JOB_TIME, dropoffTime, JOB_CAPACITY, -quantity);
+    int job = CodedOutputStream.computeBytesSize(Ivr7Kt461V8Eoaif.Job.ID_FIELD_NUMBER, jobId)
+        + nestedSize(Ivr7Kt461V8Eoaif.Job.PICKUPTASK_FIELD_NUMBER, pickup)
+        + nestedSize(Ivr7Kt461V8Eoaif.Job.DROPOFFTASK_FIELD_NUMBER, dropoff)
+        + CodedOutputStream.computeFloatSize(
+            Ivr7Kt461V8Eoaif.Job.PENALTY_FIELD_NUMBER, ivr7helper.JOB_PENALTY);
+    startNested(Ivr7Kt461V8Eoaif.Model.JOBS_FIELD_NUMBER, job);
+    out.writeBytes(Ivr7Kt461V8Eoaif.Job.ID_FIELD_NUMBER, jobId);
+    writeTask(Ivr7Kt461V8Eoaif.Job.PICKUPTASK_FIELD_NUMBER, pickup, pickupId, from, JOB_TIME,
+        pickupTime, JOB_CAPACITY, quantity);
+    writeTask(Ivr7Kt461V8Eoaif.Job.DROPOFFTASK_FIELD_NUMBER, dropoff, dropoffId, to, JOB_TIME,
+        dropoffTime, JOB_CAPACITY, -quantity);
+    out.writeFloat(Ivr7Kt461V8Eoaif.Job.PENALTY_FIELD_NUMBER, ivr7helper.JOB_PENALTY);
+    return this;
+  }
+
+  // the same jobs as ivr7helper.makeJobTimeCap(m, d, srcs, dests).
+  public ModelWriter writeJobs(OrderTable d, List<Integer> srcs, List<Integer> dests)
+      throws Exception {
+    if (srcs.size() != dests.size()) {
+      throw new Exception("Expected srcs.Count == dests.Count");
+    }
+    for (int i = 0; i < srcs.size(); i++) {
+      writeJob(d, srcs.get(i), dests.get(i));
+    }
+    return this;
+  }
+
+  public ModelWriter writeVehicle(Ivr7Kt461V8Eoaif.Vehicle vehicle) throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.VEHICLES_FIELD_NUMBER, vehicle);
+  }
+
+  public ModelWriter writeVehicleClass(Ivr7Kt461V8Eoaif.VehicleClass vehicleClass)
+      throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.VEHICLECLASSES_FIELD_NUMBER, vehicleClass);
+  }
+
+  public ModelWriter writeVehicleCostClass(Ivr7Kt461V8Eoaif.VehicleCostClass costClass)
+      throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.VEHICLECOSTCLASSES_FIELD_NUMBER, costClass);
+  }
+
+  public ModelWriter writeTransitRule(Ivr7Kt461V8Eoaif.TransitRule rule) throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.TRANSITRULES_FIELD_NUMBER, rule);
+  }
+
+  public ModelWriter writeTransitGenerator(Ivr7Kt461V8Eoaif.TransitGenerator generator)
+      throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.TRANSITGENERATORS_FIELD_NUMBER, generator);
+  }
+
+  // a transit generator holding the builder's transit set (what buildModelTransitSet would make),
+  // written straight from the builder's arrays. The set is sized up front in one pass over them.
+  public ModelWriter writeTransitGenerator(String id, TransitSetBuilder transits)
+      throws IOException {
+    long set = 0;
+    for (int i = 0; i < transits.size(); i++) {
+      set += nestedSize(
+          Ivr7Kt461V8Eoaif.TransitSet.TRANSITS_FIELD_NUMBER, transitSize(transits, i));
+    }
+    long generator =
+        CodedOutputStream.computeStringSize(Ivr7Kt461V8Eoaif.TransitGenerator.ID_FIELD_NUMBER, id)
+        + CodedOutputStream.computeTagSize(
+            Ivr7Kt461V8Eoaif.TransitGenerator.TRANSITSET_FIELD_NUMBER)
+        + CodedOutputStream.computeUInt64SizeNoTag(set) + set;
+    if (generator > Integer.MAX_VALUE) {
+      throw new IOException("transit set " + id + " is over the 2GB protobuf message limit");
+    }
+    startNested(Ivr7Kt461V8Eoaif.Model.TRANSITGENERATORS_FIELD_NUMBER, (int) generator);
+    out.writeString(Ivr7Kt461V8Eoaif.TransitGenerator.ID_FIELD_NUMBER, id);
+    startNested(Ivr7Kt461V8Eoaif.TransitGenerator.TRANSITSET_FIELD_NUMBER, (int) set);
+    for (int i = 0; i < transits.size(); i++) {
+      startNested(Ivr7Kt461V8Eoaif.TransitSet.TRANSITS_FIELD_NUMBER, transitSize(transits, i));
+      out.writeBytes(
+          Ivr7Kt461V8Eoaif.TransitSet.TransitValue.FROMID_FIELD_NUMBER, transits.fromIdBytes(i));
+      out.writeBytes(
+          Ivr7Kt461V8Eoaif.TransitSet.TransitValue.TOID_FIELD_NUMBER, transits.toIdBytes(i));
+      out.writeFloat(
+          Ivr7Kt461V8Eoaif.TransitSet.TransitValue.VALUE_FIELD_NUMBER, transits.value(i));
+    }
+    return this;
+  }
+
+  public ModelWriter writeTaskSequence(Ivr7Kt461V8Eoaif.TaskSequence sequence) throws IOException {
+    return write(Ivr7Kt461V8Eoaif.Model.TASKSEQUENCE_FIELD_NUMBER, sequence);
+  }
+
+  public long bytesWritten() {
+    return out.getTotalBytesWritten();
+  }
+
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  // flushes and closes the stream; a model written without dimensions is an error.
+  @Override
+  public void close() throws IOException {
+    try {
+      out.flush();
+    } finally {
+      os.close();
+    }
+    if (!hasDimensions) {
+      throw new IOException("model was written without dimensions");
+    }
+  }
+
+  private ModelWriter write(int fieldNumber, MessageLite record) throws IOException {
+    out.writeMessage(fieldNumber, record);
+    return this;
+  }
+
+  private void startNested(int fieldNumber, int size) throws IOException {
+    out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    out.writeUInt32NoTag(size);
+  }
+
+  private static int nestedSize(int fieldNumber, int size) {
+    return CodedOutputStream.computeTagSize(fieldNumber)
+        + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+  }
+
+  // a Job.Task with a time and a capacity attribute, as in ivr7helper.makeJob.
+  private static int taskSize(ByteString taskId, ByteString locationId, ByteString time,
+      float timeQuantity, ByteString capacity, float capacityQuantity) {
+    return CodedOutputStream.computeBytesSize(
+               Ivr7Kt461V8Eoaif.Job.Task.TASKID_FIELD_NUMBER, taskId)
+        + CodedOutputStream.computeBytesSize(
+            Ivr7Kt461V8Eoaif.Job.Task.LOCATIONID_FIELD_NUMBER, locationId)
+        + nestedSize(Ivr7Kt461V8Eoaif.Job.Task.ATTRIBUTES_FIELD_NUMBER,
+            attributeSize(time, timeQuantity))
+        + nestedSize(Ivr7Kt461V8Eoaif.Job.Task.ATTRIBUTES_FIELD_NUMBER,
+            attributeSize(capacity, capacityQuantity));
+  }
+
+  private void writeTask(int fieldNumber, int size, ByteString taskId, ByteString locationId,
+      ByteString time, float timeQuantity, ByteString capacity, float capacityQuantity)
+      throws IOException {
+    startNested(fieldNumber, size);
+    out.writeBytes(Ivr7Kt461V8Eoaif.Job.Task.TASKID_FIELD_NUMBER, taskId);
+    out.writeBytes(Ivr7Kt461V8Eoaif.Job.Task.LOCATIONID_FIELD_NUMBER, locationId);
+    writeAttribute(time, timeQuantity);
+    writeAttribute(capacity, capacityQuantity);
+  }
+
+  private static int attributeSize(ByteString dimensionId, float quantity) {
+    return CodedOutputStream.computeBytesSize(
+               Ivr7Kt461V8Eoaif.Job.Task.Attribute.DIMENSIONID_FIELD_NUMBER, dimensionId)
+        + CodedOutputStream.computeFloatSize(
+            Ivr7Kt461V8Eoaif.Job.Task.Attribute.QUANTITY_FIELD_NUMBER, quantity);
+  }
+
+  private void writeAttribute(ByteString dimensionId, float quantity) throws IOException {
+    startNested(Ivr7Kt461V8Eoaif.Job.Task.ATTRIBUTES_FIELD_NUMBER,
+        attributeSize(dimensionId, quantity));
+    out.writeBytes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.DIMENSIONID_FIELD_NUMBER, dimensionId);
+    out.writeFloat(Ivr7Kt461V8Eoaif.Job.Task.Attribute.QUANTITY_FIELD_NUMBER, quantity);
+  }
+
+  private static int transitSize(TransitSetBuilder transits, int i) {
+    return CodedOutputStream.computeBytesSize(
+               Ivr7Kt461V8Eoaif.TransitSet.TransitValue.FROMID_FIELD_NUMBER,
+               transits.fromIdBytes(i))
+        + CodedOutputStream.computeBytesSize(
+            Ivr7Kt461V8Eoaif.TransitSet.TransitValue.TOID_FIELD_NUMBER, transits.toIdBytes(i))
+        + CodedOutputStream.computeFloatSize(
+            Ivr7Kt461V8Eoaif.TransitSet.TransitValue.VALUE_FIELD_NUMBER, transits.value(i));
+  }
+
+  private static final ByteString JOB_TIME = ByteString.copyFromUtf8(ivr7helper.JOB_TIME);
+  private static final ByteString JOB_CAPACITY = ByteString.copyFromUtf8(ivr7helper.JOB_CAPACITY);
+  private static final int MODEL_FIELD_NUMBER = Ivr7Kt461V8Eoaif.SolveRequest.MODEL_FIELD_NUMBER;
+
+  private final OutputStream os;
+  private final CodedOutputStream out;
+  private boolean hasDimensions;
+}
@@ -0,0 +1,177 @@
+package icepackai;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+// The same data as a List<dataRow>, stored column by column: one float[] per field and a String[]
+// of ids (load() makes repeated ids share a single String). Half a million orders take a few
+// arrays instead of half a million objects, and the model helpers (which have OrderTable
+// overloads) walk the columns in order. asList() gives a List<dataRow> view for code that wants
+// rows; its elements are made on the fly, so changes to them aren't written back.
+public class OrderTable {
+  public OrderTable() {
+    this(16);
+  }
+
+  public OrderTable(int capacity) {
+    capacity = Math.max(1, capacity);
+    ids = new String[capacity];
+    x = new float[capacity];
+    y = new float[capacity];
+    pickupTime = new float[capacity];
+    dropoffTime = new float[capacity];
+    quantity = new float[capacity];
+  }
+
+  // reads the file straight into the columns (the same columns dataRow.LoadData reads).
+  public static OrderTable load(String filename) throws Exception {
+    OrderTable table = new OrderTable(1024);
+    // only while reading: an entry per row for the life of the table would outweigh the rows.
+    Map<String, String> interned = new HashMap<String, String>();
+    try (CsvReader csv = new CsvReader(Paths.get(filename))) {
+      Columns c = new Columns(csv);
+      while (csv.next()) {
+        boolean full = csv.fieldCount() >= 4;
+        String id = csv.getString(c.id);
+        String seen = interned.putIfAbsent(id, id);
+        table.add(seen == null ? id : seen, csv.getFloat(c.x), csv.getFloat(c.y),
+            full && c.pickupTime >= 0 ? csv.getFloat(c.pickupTime) : 0,
+            full && c.dropoffTime >= 0 ? csv.getFloat(c.dropoffTime) : 0,
+            full ? csv.getFloat(c.quantity) : 0);
+      }
+    }
+    return table;
+  }
+
+  // the table behind rows if it's an asList() view, otherwise a copy of them.
+  public static OrderTable of(List<dataRow> rows) {
+    if (rows instanceof RowView) {
+      return ((RowView) rows).table;
+    }
+    OrderTable table = new OrderTable(rows.size());
+    for (dataRow r : rows) {
+      table.add(r.id, r.X, r.Y, r.pickupTime, r.dropoffTime, r.quantity);
+    }
+    return table;
+  }
+
+  // returns the new row's index.
+  public int add(String id, float x, float y, float pickupTime, float dropoffTime, float quantity) {
+    if (size == ids.length) {
+      int grown = size * 2;
+      ids = Arrays.copyOf(ids, grown);
+      this.x = Arrays.copyOf(this.x, grown);
+      this.y = Arrays.copyOf(this.y, grown);
+      this.pickupTime = Arrays.copyOf(this.pickupTime, grown);
+      this.dropoffTime = Arrays.copyOf(this.dropoffTime, grown);
+      this.quantity = Arrays.copyOf(this.quantity, grown);
+    }
+    ids[size] = id;
+    this.x[size] = x;
+    this.y[size] = y;
+    this.pickupTime[size] = pickupTime;
+    this.dropoffTime[size] = dropoffTime;
+    this.quantity[size] = quantity;
+    return size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String id(int row) {
+    check(row);
+    return ids[row];
+  }
+
+  public float x(int row) {
+    check(row);
+    return x[row];
+  }
+
+  public float y(int row) {
+    check(row);
+    return y[row];
+  }
+
+  public float pickupTime(int row) {
+    check(row);
+    return pickupTime[row];
+  }
+
+  public float dropoffTime(int row) {
+    check(row);
+    return dropoffTime[row];
+  }
+
+  public float quantity(int row) {
+    check(row);
+    return quantity[row];
+  }
+
+  public List<dataRow> asList() {
+    return new RowView(this);
+  }
+
+  private void check(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("row " + row + " of " + size);
+    }
+  }
+
+  private static class RowView extends AbstractList<dataRow> implements RandomAccess {
+    RowView(OrderTable table) {
+      this.table = table;
+    }
+
+    @Override
+    public dataRow get(int i) {
+      return new dataRow(table.id(i), table.x[i], table.y[i], table.pickupTime[i],
+          table.dropoffTime[i], table.quantity[i]);
+    }
+
+    @Override
+    public int size() {
+      return table.size;
+    }
+
+    final OrderTable table;
+  }
+
+  // Where each field lives in a csv file, found by header name (quotes stripped): id, X or
+  // longitude, Y or latitude, pickupTime, dropoffTime and quantity or demand. A field that isn't
+  // named falls back to the position the examples' files use (ns3 files, with "name" in the second
+  // column, have longitude/latitude/demand in the third to fifth and no times, so those are -1).
+  static class Columns {
+    Columns(CsvReader csv) {
+      String[] header = csv.getHeader();
+      boolean ns3format = header.length > 1 && header[0].equals("id") && header[1].equals("name");
+      id = column(csv, 0, "id");
+      x = column(csv, ns3format ? 2 : 1, "X", "longitude");
+      y = column(csv, ns3format ? 3 : 2, "Y", "latitude");
+      pickupTime = ns3format ? -1 : column(csv, 3, "pickupTime");
+      dropoffTime = ns3format ? -1 : column(csv, 4, "dropoffTime");
+      quantity = column(csv, ns3format ? 4 : 5, "quantity", "demand");
+    }
+
+    private static int column(CsvReader csv, int position, String... names) {
+      int c = csv.column(names);
+      return c < 0 ? position : c;
+    }
+
+    final int id;
+    final int x;
+    final int y;
+    final int pickupTime;
+    final int dropoffTime;
+    final int quantity;
+  }
+
+  private String[] ids;
+  private float[] x;
+  private float[] y;
+  private float[] pickupTime;
+  private float[] dropoffTime;
+  private float[] quantity;
+  private int size;
+}
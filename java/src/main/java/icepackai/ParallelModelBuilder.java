@@ -0,0 +1,112 @@
+package icepackai;
+
+import icepackai.IVR7.Ivr7Kt461V8Eoaif;
+import icepackai.IVR8.Ivr8Yni1C9K2Swof;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+// Builds the locations and jobs of large ivr7/ivr8 models on a fork-join pool. The table is split
+// into chunks of chunkSize rows, each chunk's messages are built on whichever worker picks it up
+// (with the same makeLocation/makeJob the sequential helpers use), and the results are added to
+// the model in one addAllLocations/addAllJobs call, in row order - so the model comes out exactly
+// as ivr7helper.makeLocations/makeJobTimeCap would build it, just sooner.
+// The table must not be added to while a build is running.
+public class ParallelModelBuilder {
+  public ParallelModelBuilder() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public ParallelModelBuilder(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  // rows per task; small enough to spread the work, big enough that splitting doesn't dominate.
+  public int chunkSize = 2048;
+
+  public void makeLocations(Ivr7Kt461V8Eoaif.Model.Builder m, OrderTable d) {
+    makeLocations(m, d, 0.0f, 0.0f);
+  }
+
+  public void makeLocations(
+      Ivr7Kt461V8Eoaif.Model.Builder m, OrderTable d, float windowStart, float windowEnd) {
+    m.addAllLocations(build(d.size(), i -> ivr7helper.makeLocation(d, i, windowStart, windowEnd)));
+  }
+
+  public void makeJobTimeCap(Ivr7Kt461V8Eoaif.Model.Builder m, OrderTable d, List<Integer> srcs,
+      List<Integer> dests) throws Exception {
+    int[] s = indices(srcs, dests);
+    int[] t = indices(dests, srcs);
+    m.addAllJobs(build(s.length, i -> ivr7helper.makeJob(d, s[i], t[i])));
+  }
+
+  public void makeLocations(Ivr8Yni1C9K2Swof.Model.Builder m, OrderTable d) {
+    makeLocations(m, d, 0.0f, 0.0f);
+  }
+
+  public void makeLocations(
+      Ivr8Yni1C9K2Swof.Model.Builder m, OrderTable d, float windowStart, float windowEnd) {
+    m.addAllLocations(build(d.size(), i -> ivr8helper.makeLocation(d, i, windowStart, windowEnd)));
+  }
+
+  public void makeJobTimeCap(Ivr8Yni1C9K2Swof.Model.Builder m, OrderTable d, List<Integer> srcs,
+      List<Integer> dests) throws Exception {
+    int[] s = indices(srcs, dests);
+    int[] t = indices(dests, srcs);
+    m.addAllJobs(build(s.length, i -> ivr8helper.makeJob(d, s[i], t[i])));
+  }
+
+  // element(i) for i in [0, count), built in parallel and returned in index order. element is
+  // called from several threads at once.
+  public <T> List<T> build(int count, IntFunction<T> element) {
+    Object[] out = new Object[count];
+    pool.invoke(new Chunk(out, element, 0, count));
+    @SuppressWarnings("unchecked")
+    List<T> res = (List<T>) Arrays.asList(out);
+    return res;
+  }
+
+  private class Chunk extends RecursiveAction {
+    Chunk(Object[] out, IntFunction<?> element, int from, int to) {
+      this.out = out;
+      this.element = element;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= Math.max(1, chunkSize)) {
+        for (int i = from; i < to; i++) {
+          out[i] = element.apply(i);
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new Chunk(out, element, from, mid), new Chunk(out, element, mid, to));
+    }
+
+    private final Object[] out;
+    private final IntFunction<?> element;
+    private final int from;
+    private final int to;
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  // the list as an int[], so the workers don't share (and unbox) the caller's list.
+  private static int[] indices(List<Integer> list, List<Integer> other) throws Exception {
+    if (list.size() != other.size()) {
+      throw new Exception("Expected srcs.Count == dests.Count");
+    }
+    int[] res = new int[list.size()];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = list.get(i);
+    }
+    return res;
+  }
+
+  private final ForkJoinPool pool;
+}
@@ -0,0 +1,42 @@
+package icepackai;
+
+// Book-keeping for one request while it is being polled. Handed to the apiHelper's stats listener
+// once the request finishes so the polling policy can be tuned against real latencies.
+public class PollStats {
+  public PollStats(String requestId) {
+    this(requestId, System.nanoTime());
+  }
+
+  public PollStats(String requestId, long startNanos) {
+    this.requestId = requestId;
+    this.startNanos = startNanos;
+  }
+
+  public String requestId;
+
+  // number of GETs issued for this request.
+  public int polls;
+
+  // number of solver log entries already passed to the log listener.
+  public int logsSeen;
+
+  // polls in a row that failed with an error the RetryPolicy retries.
+  public int failures;
+
+  // the last Retry-After hint from the server (0 if there wasn't one).
+  public long retryAfterMillis;
+
+  // submit (or the first Get) to completion; set once the request has finished.
+  public long latencyMillis;
+
+  final long startNanos;
+
+  public long elapsedMillis() {
+    return (System.nanoTime() - startNanos) / 1000000L;
+  }
+
+  @Override
+  public String toString() {
+    return requestId + ": " + polls + " polls, " + latencyMillis + " ms";
+  }
+}
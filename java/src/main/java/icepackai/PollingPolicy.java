@@ -0,0 +1,48 @@
+package icepackai;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Controls how often the apiHelper polls for a result. Small requests (tsp, matrix) usually finish
+// within a few hundred milliseconds, so the first few polls are quick; after that the interval
+// grows geometrically (with some jitter so a batch of requests doesn't poll in lock-step) up to a
+// ceiling, which keeps long ivr7/ns3 solves from hammering the endpoint. A Retry-After hint from
+// the server always wins over a shorter computed interval.
+public class PollingPolicy {
+  public PollingPolicy() {}
+
+  // delay before each of the first fastPolls polls.
+  public long firstIntervalMillis = 250;
+
+  public int fastPolls = 4;
+
+  // growth of the interval after the fast polls, capped at maxIntervalMillis.
+  public double backoffMultiplier = 1.5;
+
+  public long maxIntervalMillis = 10000;
+
+  // each interval is randomised by +/- this fraction.
+  public double jitter = 0.1;
+
+  // give up on a request this long after it was submitted (0: wait forever).
+  public long deadlineMillis = 0;
+
+  public long nextDelayMillis(PollStats stats) {
+    double delay = firstIntervalMillis;
+    if (stats.polls >= fastPolls) {
+      delay = Math.min(maxIntervalMillis,
+          firstIntervalMillis * Math.pow(backoffMultiplier, stats.polls - fastPolls + 1));
+    }
+    if (jitter > 0) {
+      delay *= 1.0 + jitter * (2.0 * ThreadLocalRandom.current().nextDouble() - 1.0);
+    }
+    long millis = Math.max((long) delay, stats.retryAfterMillis);
+    if (deadlineMillis > 0) {
+      millis = Math.max(0, Math.min(millis, deadlineMillis - stats.elapsedMillis()));
+    }
+    return millis;
+  }
+
+  public boolean expired(PollStats stats) {
+    return deadlineMillis > 0 && stats.elapsedMillis() >= deadlineMillis;
+  }
+}
@@ -0,0 +1,23 @@
+package icepackai;
+
+// The outcome of one request in an apiHelper.postAll batch: either the request id the api handed
+// back, or the reason the post failed.
+public class PostResult {
+  public PostResult(String requestId, Exception error) {
+    this.requestId = requestId;
+    this.error = error;
+  }
+
+  public String requestId;
+
+  public Exception error;
+
+  public boolean ok() {
+    return error == null;
+  }
+
+  @Override
+  public String toString() {
+    return ok() ? requestId : "failed: " + error;
+  }
+}
@@ -0,0 +1,16 @@
+package icepackai;
+
+// Client-side limits for one endpoint, set per models-map path under "rateLimits" in config.json,
+// e.g. "rateLimits": {"vehicle-router/solve/": {"requestsPerSecond": 5, "maxInFlight": 8}}.
+// Zero means no limit.
+public class RateLimit {
+  public RateLimit() {}
+
+  // sustained rate of http requests (posts and polls), and how many can go out back to back.
+  public double requestsPerSecond;
+
+  public int burst;
+
+  // http requests open at once, across every helper using the endpoint.
+  public int maxInFlight;
+}
@@ -0,0 +1,121 @@
+package icepackai;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// A record on disk of every request posted and not yet finished, so a process that restarts in the
+// middle of a long solve can pick the request back up (apiHelper.resume, or Post of the same
+// payload) instead of solving it again. The journal is an append-only text file with a line per
+// event, synced to disk before the call returns:
+//   S requestId modelType payloadHash submittedAt   - posted
+//   D requestId                                     - finished (solved, failed or given up on)
+// Finished requests are dropped from the file the next time it's opened.
+public class RequestJournal {
+  public static class Entry {
+    Entry(String requestId, String modelType, String hash, long submittedAt) {
+      this.requestId = requestId;
+      this.modelType = modelType;
+      this.hash = hash;
+      this.submittedAt = submittedAt;
+    }
+
+    public final String requestId;
+    public final String modelType;
+    public final String hash;
+    public final long submittedAt;
+
+    @Override
+    public String toString() {
+      return requestId + " (" + modelType + ", submitted " + new Date(submittedAt) + ")";
+    }
+  }
+
+  public RequestJournal(Path file) throws IOException {
+    this.file = file;
+    boolean finished = false;
+    if (Files.exists(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        String[] items = line.trim().split("\\s+");
+        if (items.length == 5 && items[0].equals("S")) {
+          try {
+            pending.put(
+                items[1], new Entry(items[1], items[2], items[3], Long.parseLong(items[4])));
+          } catch (NumberFormatException e) {
+            // a torn last line from a crash mid-write; the request was never acknowledged.
+          }
+        } else if (items.length == 2 && items[0].equals("D")) {
+          finished |= pending.remove(items[1]) != null;
+        }
+      }
+      if (finished) {
+        compact();
+      }
+    }
+  }
+
+  public synchronized void submitted(String requestId, String modelType, String hash)
+      throws IOException {
+    Entry e = new Entry(requestId, modelType, hash, System.currentTimeMillis());
+    append("S " + requestId + " " + modelType + " " + hash + " " + e.submittedAt);
+    pending.put(requestId, e);
+  }
+
+  public synchronized void finished(String requestId) throws IOException {
+    if (pending.remove(requestId) != null) {
+      append("D " + requestId);
+    }
+  }
+
+  // the pending request for this payload, if there is one.
+  public synchronized String pendingRequest(String modelType, String hash) {
+    for (Entry e : pending.values()) {
+      if (e.modelType.equals(modelType) && e.hash.equals(hash)) {
+        return e.requestId;
+      }
+    }
+    return null;
+  }
+
+  // the requests of this model type still waiting on a result, oldest first.
+  public synchronized List<Entry> pending(String modelType) {
+    List<Entry> entries = new ArrayList<Entry>();
+    for (Entry e : pending.values()) {
+      if (e.modelType.equals(modelType)) {
+        entries.add(e);
+      }
+    }
+    return entries;
+  }
+
+  private void append(String line) throws IOException {
+    Files.write(file, (line + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+  }
+
+  private void compact() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (Entry e : pending.values()) {
+      sb.append("S ")
+          .append(e.requestId)
+          .append(' ')
+          .append(e.modelType)
+          .append(' ')
+          .append(e.hash)
+          .append(' ')
+          .append(e.submittedAt)
+          .append('\n');
+    }
+    Path tmp = Paths.get(file.toString() + ".tmp");
+    Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private final Path file;
+  private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<String, Entry>();
+}
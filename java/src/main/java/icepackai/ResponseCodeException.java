@@ -0,0 +1,16 @@
+package icepackai;
+
+import java.io.IOException;
+
+// The api answered, but not with a 200. Kept apart from other IOExceptions (which mean we never
+// got an answer) so the RetryPolicy can tell the two apart.
+public class ResponseCodeException extends IOException {
+  public ResponseCodeException(int code, String body) {
+    super("Unexpected response code " + code + " from the api: " + body);
+    this.code = code;
+  }
+
+  public final int code;
+
+  private static final long serialVersionUID = 1L;
+}
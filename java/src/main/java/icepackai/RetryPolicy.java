@@ -0,0 +1,72 @@
+package icepackai;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.Locale;
+
+// Which failed posts and polls the apiHelper tries again, and how long it waits in between.
+// Polls are retried on 429 (after the endpoint's back-off), 5xx, and the io errors that mean the
+// api couldn't be reached or stopped answering (connection refused/reset, no route, timeouts),
+// which it may yet get over. A post is only retried when the api never got it: a 429, or a
+// connection that couldn't be made (refused, no route, connect timeout). A post that failed once
+// the body may have been sent - a reset, a read timeout, a 5xx - may have been accepted and be
+// solving, and a retry could pay for a second solve, so that failure goes back to the caller.
+// Anything else - a 4xx says the request itself is wrong, an interrupt or an SSL error won't go
+// away by waiting - fails straight away.
+public class RetryPolicy {
+  public RetryPolicy() {}
+
+  // attempts in total, including the first; 1 disables retries.
+  public int maxAttempts = 5;
+
+  public long firstDelayMillis = 500;
+
+  public double backoffMultiplier = 2;
+
+  public long maxDelayMillis = 30000;
+
+  // for polls, which are safe to repeat.
+  public boolean retryable(IOException e) {
+    if (e instanceof ResponseCodeException) {
+      int code = ((ResponseCodeException) e).code;
+      return code == 429 || code >= 500;
+    }
+    // the transports sometimes wrap the socket's exception, so look through the causes too.
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof ConnectException || t instanceof NoRouteToHostException
+          || t instanceof SocketTimeoutException || t instanceof HttpTimeoutException
+          || (t instanceof SocketException && t.getMessage() != null
+              && t.getMessage().contains("Connection reset"))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // for posts: only failures that leave no doubt the request wasn't sent.
+  public boolean retryablePost(IOException e) {
+    if (e instanceof ResponseCodeException) {
+      return ((ResponseCodeException) e).code == 429;
+    }
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof ConnectException || t instanceof NoRouteToHostException
+          || t instanceof HttpConnectTimeoutException
+          || (t instanceof SocketTimeoutException && t.getMessage() != null
+              && t.getMessage().toLowerCase(Locale.ROOT).startsWith("connect timed out"))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // the wait before retry number `retry` (1 for the first retry).
+  public long delayMillis(int retry) {
+    return (long) Math.min(
+        maxDelayMillis, firstDelayMillis * Math.pow(backoffMultiplier, retry - 1));
+  }
+}
@@ -0,0 +1,164 @@
+package icepackai;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+// Completed solutions keyed on a ContentHash of the request that produced them. Planners often
+// resubmit a request byte-for-byte; with a cache attached to an apiHelper those come back without
+// a remote solve. What's kept is the solution, i.e. what Get/solve return, not the whole solver
+// response: a cache hit has no solver logs or state to report. Entries live in an in-memory LRU
+// bounded by total size, and optionally in a directory on disk (one file per hash) that survives
+// restarts and backs the memory tier. The directory is bounded by size too: once its .bin files
+// pass maxDiskBytes, the least recently used are deleted.
+public class SolutionCache {
+  public static final long DEFAULT_MAX_DISK_BYTES = 1L << 30;
+
+  public SolutionCache(long maxMemoryBytes) {
+    this(maxMemoryBytes, null);
+  }
+
+  // directory may be null for a memory-only cache.
+  public SolutionCache(long maxMemoryBytes, Path directory) {
+    this(maxMemoryBytes, directory, DEFAULT_MAX_DISK_BYTES);
+  }
+
+  public SolutionCache(long maxMemoryBytes, Path directory, long maxDiskBytes) {
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.directory = directory;
+    this.maxDiskBytes = maxDiskBytes;
+  }
+
+  // the serialised solution for this hash, or null if we haven't seen it.
+  public byte[] get(String hash) throws IOException {
+    synchronized (memory) {
+      byte[] hit = memory.get(hash);
+      if (hit != null) {
+        hits++;
+        return hit;
+      }
+    }
+    if (directory != null) {
+      Path file = directory.resolve(hash + ".bin");
+      try {
+        byte[] hit = Files.readAllBytes(file);
+        // the modified time is the file's last use, which is what trimDisk evicts by.
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        remember(hash, hit);
+        synchronized (memory) {
+          diskHits++;
+        }
+        return hit;
+      } catch (NoSuchFileException e) {
+        // not cached, or trimmed since.
+      }
+    }
+    synchronized (memory) {
+      misses++;
+    }
+    return null;
+  }
+
+  // the bytes are kept as-is (and may be aliased by parsed messages), so don't modify them after.
+  public void put(String hash, byte[] solution) throws IOException {
+    remember(hash, solution);
+    if (directory != null) {
+      Files.createDirectories(directory);
+      Path tmp = Files.createTempFile(directory, hash, ".tmp");
+      Files.write(tmp, solution);
+      Files.move(tmp, directory.resolve(hash + ".bin"), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      synchronized (disk) {
+        // the first put lists the directory, which may hold files from earlier runs.
+        if (diskBytes < 0 || (diskBytes += solution.length) > maxDiskBytes) {
+          trimDisk();
+        }
+      }
+    }
+  }
+
+  // Deletes the least recently used files until the directory is back under maxDiskBytes. The
+  // running total is only an estimate (replaced entries and other processes aren't counted), so
+  // the directory is listed afresh each time it's trimmed. Called holding disk.
+  private void trimDisk() throws IOException {
+    List<Path> files = new ArrayList<Path>();
+    Map<Path, FileTime> used = new HashMap<Path, FileTime>();
+    long total = 0;
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory, "*.bin")) {
+      for (Path file : dir) {
+        try {
+          used.put(file, Files.getLastModifiedTime(file));
+          total += Files.size(file);
+          files.add(file);
+        } catch (NoSuchFileException e) {
+          // trimmed by someone else.
+        }
+      }
+    }
+    files.sort((a, b) -> used.get(a).compareTo(used.get(b)));
+    int evicted = 0;
+    for (Path file : files) {
+      if (total <= maxDiskBytes) {
+        break;
+      }
+      try {
+        long size = Files.size(file);
+        Files.delete(file);
+        total -= size;
+        evicted++;
+      } catch (NoSuchFileException e) {
+        // trimmed by someone else.
+      }
+    }
+    diskBytes = total;
+    synchronized (memory) {
+      diskEvictions += evicted;
+    }
+  }
+
+  private void remember(String hash, byte[] solution) {
+    if (solution.length > maxMemoryBytes) {
+      return; // would evict everything else and still not fit.
+    }
+    synchronized (memory) {
+      byte[] previous = memory.put(hash, solution);
+      memoryBytes += solution.length - (previous == null ? 0 : previous.length);
+      Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+      while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+        memoryBytes -= eldest.next().getValue().length;
+        eldest.remove();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (memory) {
+      return "solution cache: " + memory.size() + " entries (" + memoryBytes + " bytes) in memory, "
+          + hits + " memory hits, " + diskHits + " disk hits, " + misses + " misses, "
+          + diskEvictions + " evicted from disk";
+    }
+  }
+
+  private final long maxMemoryBytes;
+  private final Path directory;
+  private final long maxDiskBytes;
+
+  // access-ordered, so iteration starts at the least recently used entry.
+  private final LinkedHashMap<String, byte[]> memory =
+      new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+  private long memoryBytes;
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long diskEvictions;
+
+  // guards diskBytes, the size of the directory's .bin files; -1 until it's first listed.
+  private final Object disk = new Object();
+  private long diskBytes = -1;
+}
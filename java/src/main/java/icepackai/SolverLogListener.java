@@ -0,0 +1,13 @@
+package icepackai;
+
+import icepackai.problem.Problem;
+
+// Receives solver log entries as they appear. The apiHelper remembers how many log entries it has
+// already handed out for each request, so every entry is delivered exactly once no matter how many
+// times the request is polled.
+public interface SolverLogListener {
+  void onLog(String requestId, Problem.SolverInfo info);
+
+  // the default: write each new entry to stdout.
+  SolverLogListener CONSOLE = (requestId, info) -> System.out.print(info);
+}
@@ -0,0 +1,234 @@
+package icepackai;
+
+import com.google.protobuf.ByteString;
+import icepackai.IVR7.Ivr7Kt461V8Eoaif;
+import icepackai.IVRData.IvrdataO43E0Dvs78Zq;
+
+import java.nio.FloatBuffer;
+import java.util.*;
+
+// Builds custom transit sets (for the ivrdata upload or embedded in an ivr7 model) in bulk.
+// Transit sets are layered over the road network, so they only need the elements that differ from
+// it: give the add methods the road-network matrix as a base and anything within tolerance of it
+// is left out. Elements are kept as indices into an id table, and each id is encoded to a
+// ByteString once and shared by every element that uses it, rather than copied per element.
+// Putting the same pair twice keeps the last value.
+public class TransitSetBuilder {
+  public TransitSetBuilder() {
+    this(new IdPool());
+  }
+
+  // ids are encoded through the given pool, e.g. one shared by several transit sets.
+  public TransitSetBuilder(IdPool pool) {
+    this.pool = pool;
+  }
+
+  // a single element, i.e. one entry in a sparse override map.
+  public TransitSetBuilder put(String fromId, String toId, float value) {
+    set(intern(fromId), intern(toId), value);
+    return this;
+  }
+
+  // overrides keyed on from id, then to id.
+  public TransitSetBuilder putAll(Map<String, Map<String, Float>> overrides) {
+    for (Map.Entry<String, Map<String, Float>> from : overrides.entrySet()) {
+      for (Map.Entry<String, Float> to : from.getValue().entrySet()) {
+        put(from.getKey(), to.getKey(), to.getValue());
+      }
+    }
+    return this;
+  }
+
+  // every filled (non-NaN) element of the matrix off the diagonal.
+  public TransitSetBuilder addDistances(DenseTransitMatrix matrix) throws Exception {
+    return add(matrix, matrix.distances(), null, null, 0);
+  }
+
+  public TransitSetBuilder addDurations(DenseTransitMatrix matrix) throws Exception {
+    return add(matrix, matrix.durations(), null, null, 0);
+  }
+
+  // only the elements that differ from base by more than tolerance (or that base doesn't have).
+  public TransitSetBuilder addDistances(DenseTransitMatrix matrix, DenseTransitMatrix base,
+      float tolerance) throws Exception {
+    return add(matrix, matrix.distances(), base, base.distances(), tolerance);
+  }
+
+  public TransitSetBuilder addDurations(DenseTransitMatrix matrix, DenseTransitMatrix base,
+      float tolerance) throws Exception {
+    return add(matrix, matrix.durations(), base, base.durations(), tolerance);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public IvrdataO43E0Dvs78Zq.TransitSet buildDataTransitSet() {
+    List<IvrdataO43E0Dvs78Zq.TransitSet.TransitValue> transits =
+        new ArrayList<IvrdataO43E0Dvs78Zq.TransitSet.TransitValue>(count);
+    IvrdataO43E0Dvs78Zq.TransitSet.TransitValue.Builder b =
+        IvrdataO43E0Dvs78Zq.TransitSet.TransitValue.newBuilder();
+    for (int i = 0; i < count; i++) {
+      transits.add(b.setFromIdBytes(idBytes.get(fromIds[i]))
+                       .setToIdBytes(idBytes.get(toIds[i]))
+                       .setValue(values[i])
+                       .build());
+    }
+    return IvrdataO43E0Dvs78Zq.TransitSet.newBuilder().addAllTransits(transits).build();
+  }
+
+  public Ivr7Kt461V8Eoaif.TransitSet buildModelTransitSet() {
+    List<Ivr7Kt461V8Eoaif.TransitSet.TransitValue> transits =
+        new ArrayList<Ivr7Kt461V8Eoaif.TransitSet.TransitValue>(count);
+    Ivr7Kt461V8Eoaif.TransitSet.TransitValue.Builder b =
+        Ivr7Kt461V8Eoaif.TransitSet.TransitValue.newBuilder();
+    for (int i = 0; i < count; i++) {
+      transits.add(b.setFromIdBytes(idBytes.get(fromIds[i]))
+                       .setToIdBytes(idBytes.get(toIds[i]))
+                       .setValue(values[i])
+                       .build());
+    }
+    return Ivr7Kt461V8Eoaif.TransitSet.newBuilder().addAllTransits(transits).build();
+  }
+
+  // element i, for ModelWriter.
+  ByteString fromIdBytes(int i) {
+    return idBytes.get(fromIds[i]);
+  }
+
+  ByteString toIdBytes(int i) {
+    return idBytes.get(toIds[i]);
+  }
+
+  float value(int i) {
+    return values[i];
+  }
+
+  private TransitSetBuilder add(DenseTransitMatrix matrix, FloatBuffer block,
+      DenseTransitMatrix base, FloatBuffer baseBlock, float tolerance) throws Exception {
+    int n = matrix.size();
+    List<String> ids = matrix.getIds();
+    // map the matrix ids onto the id table (and onto base's indices) once, not per element.
+    int[] table = new int[n];
+    int[] baseIndex = new int[n];
+    for (int i = 0; i < n; i++) {
+      table[i] = intern(ids.get(i));
+      baseIndex[i] = -1;
+      if (base != null && base.contains(ids.get(i))) {
+        baseIndex[i] = base.indexOf(ids.get(i));
+      }
+    }
+    int baseN = base == null ? 0 : base.size();
+    // added to an empty builder, every (i, j) is new (if the ids are), so there's nothing to look
+    // up; the index is only built if something is added after.
+    boolean fresh = count == 0 && distinct(table);
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        // the diagonal is DenseTransitMatrix's zero placeholder, not a transit to send.
+        if (i == j) {
+          continue;
+        }
+        float v = block.get(i * n + j);
+        if (Float.isNaN(v)) {
+          continue;
+        }
+        if (baseIndex[i] >= 0 && baseIndex[j] >= 0) {
+          float b = baseBlock.get(baseIndex[i] * baseN + baseIndex[j]);
+          if (Math.abs(v - b) <= tolerance) {
+            continue;
+          }
+        }
+        if (fresh) {
+          append(table[i], table[j], v);
+        } else {
+          set(table[i], table[j], v);
+        }
+      }
+    }
+    return this;
+  }
+
+  private boolean distinct(int[] table) {
+    BitSet seen = new BitSet(idBytes.size());
+    for (int t : table) {
+      if (seen.get(t)) {
+        return false;
+      }
+      seen.set(t);
+    }
+    return true;
+  }
+
+  private void set(int from, int to, float value) {
+    int existing = find(from, to);
+    if (existing >= 0) {
+      values[existing] = value;
+    } else {
+      append(from, to, value);
+    }
+  }
+
+  // The element at (from, to), or -1. The index is an open-addressing table of element + 1 (0 is
+  // an empty slot) compared through fromIds/toIds, so it costs an int per slot rather than a boxed
+  // entry per element. Elements appended since the last lookup are indexed first.
+  private int find(int from, int to) {
+    if ((count + 1) * 4L > slots.length * 3L) {
+      int capacity = slots.length;
+      while ((count + 1) * 4L > capacity * 3L) {
+        capacity *= 2;
+      }
+      slots = new int[capacity];
+      indexed = 0;
+    }
+    for (; indexed < count; indexed++) {
+      slots[slot(fromIds[indexed], toIds[indexed])] = indexed + 1;
+    }
+    return slots[slot(from, to)] - 1;
+  }
+
+  // the slot holding (from, to), or the empty slot where it would go.
+  private int slot(int from, int to) {
+    int mask = slots.length - 1;
+    // fibonacci hashing: take the slot from the high bits of the product.
+    int shift = Integer.numberOfLeadingZeros(slots.length) + 1;
+    for (int s = ((from * 0x9E3779B9 + to) * 0x9E3779B9) >>> shift;; s = (s + 1) & mask) {
+      int e = slots[s] - 1;
+      if (e < 0 || (fromIds[e] == from && toIds[e] == to)) {
+        return s;
+      }
+    }
+  }
+
+  private int intern(String id) {
+    Integer i = idIndex.get(id);
+    if (i == null) {
+      i = idBytes.size();
+      idIndex.put(id, i);
+      idBytes.add(pool.get(id));
+    }
+    return i;
+  }
+
+  private void append(int from, int to, float value) {
+    if (count == values.length) {
+      int grown = Math.max(16, count * 2);
+      fromIds = Arrays.copyOf(fromIds, grown);
+      toIds = Arrays.copyOf(toIds, grown);
+      values = Arrays.copyOf(values, grown);
+    }
+    fromIds[count] = from;
+    toIds[count] = to;
+    values[count] = value;
+    count++;
+  }
+
+  private final IdPool pool;
+  private final Map<String, Integer> idIndex = new HashMap<String, Integer>();
+  private final List<ByteString> idBytes = new ArrayList<ByteString>();
+  private int[] fromIds = new int[0];
+  private int[] toIds = new int[0];
+  private float[] values = new float[0];
+  private int count = 0;
+  private int[] slots = new int[16];
+  private int indexed = 0;
+}
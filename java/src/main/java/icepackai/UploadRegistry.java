@@ -0,0 +1,90 @@
+package icepackai;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+// Remembers which request id the api handed back for each uploaded payload (keyed on its
+// ContentHash), so master data that hasn't changed since the last run is referenced by id rather
+// than uploaded again. Entries expire after ttlMillis, which should be comfortably shorter than
+// the api keeps uploaded data around for. The registry is a small text file - one
+// "hash requestId uploadedAt" line per entry - rewritten whenever an entry is added.
+public class UploadRegistry {
+  public static final long DEFAULT_TTL_MILLIS = 24L * 60 * 60 * 1000;
+
+  public UploadRegistry(Path file) throws IOException {
+    this(file, DEFAULT_TTL_MILLIS);
+  }
+
+  public UploadRegistry(Path file, long ttlMillis) throws IOException {
+    this.file = file;
+    this.ttlMillis = ttlMillis;
+    if (Files.exists(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        String[] items = line.trim().split("\\s+");
+        if (items.length == 3) {
+          try {
+            entries.put(items[0], new Entry(items[1], Long.parseLong(items[2])));
+          } catch (NumberFormatException e) {
+            // skip the line; it'll be dropped the next time the file is written.
+          }
+        }
+      }
+    }
+  }
+
+  // the request id of an unexpired upload with this hash, or null.
+  public synchronized String get(String hash) {
+    Entry e = entries.get(hash);
+    if (e == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - e.uploadedAt > ttlMillis) {
+      entries.remove(hash);
+      return null;
+    }
+    return e.requestId;
+  }
+
+  public synchronized void put(String hash, String requestId) throws IOException {
+    entries.put(hash, new Entry(requestId, System.currentTimeMillis()));
+    save();
+  }
+
+  // writes the unexpired entries next to the file and moves them into place.
+  private void save() throws IOException {
+    long now = System.currentTimeMillis();
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+      if (now - e.getValue().uploadedAt <= ttlMillis) {
+        sb.append(e.getKey())
+            .append(' ')
+            .append(e.getValue().requestId)
+            .append(' ')
+            .append(e.getValue().uploadedAt)
+            .append('\n');
+      }
+    }
+    Path tmp = Paths.get(file.toString() + ".tmp");
+    Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static class Entry {
+    Entry(String requestId, long uploadedAt) {
+      this.requestId = requestId;
+      this.uploadedAt = uploadedAt;
+    }
+
+    final String requestId;
+    final long uploadedAt;
+  }
+
+  private final Path file;
+  private final long ttlMillis;
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+}
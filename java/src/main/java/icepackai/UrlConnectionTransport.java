@@ -0,0 +1,71 @@
+package icepackai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+
+// HttpTransport over java.net.HttpURLConnection. Every call opens its own connection object and
+// the response is always read to the end and closed rather than calling disconnect(). That hands
+// the socket back to the jdk keep-alive cache, so the next post/poll to the same host reuses it
+// instead of paying for a new tcp + tls handshake.
+// The cache is the jdk's, shared by every HttpURLConnection in the process, and keeps at most
+// "http.maxConnections" idle sockets per host (default 5). maxConnections here only caps the
+// requests this transport has open; to keep that many sockets alive between them, start the jvm
+// with -Dhttp.maxConnections=16 (the property is read once, when the first connection is made).
+public class UrlConnectionTransport extends HttpTransport {
+  public UrlConnectionTransport(String apiToken, int maxConnections) {
+    this(apiToken, maxConnections, new CompressionPolicy(), null);
+  }
+
+  public UrlConnectionTransport(String apiToken, int maxConnections,
+      CompressionPolicy compression, CompressionStats stats) {
+    super(apiToken, maxConnections, compression, stats);
+  }
+
+  @Override
+  protected <R> R exchange(String method, String url, BodyWriter body,
+      ResponseHandler<R> handler) throws IOException {
+    HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+    con.setDoInput(true);
+    con.setUseCaches(false);
+    con.setConnectTimeout(connectTimeoutMillis);
+    // between reads of the socket, so it doesn't count the time taken to send the body.
+    con.setReadTimeout(readTimeoutMillis);
+    con.setRequestMethod(method);
+    for (Map.Entry<String, String> h : requestHeaders().entrySet()) {
+      con.setRequestProperty(h.getKey(), h.getValue());
+    }
+    if (body != null) {
+      con.setDoOutput(true);
+      String encoding = compression.encodingFor(body.length());
+      if (encoding != null) {
+        con.setRequestProperty("Content-Encoding", encoding);
+      }
+      // small bodies are left for HttpURLConnection to buffer: in streaming mode it drops the body
+      // of a 401 (getErrorStream() comes back null), and that body says what's wrong with the
+      // token.
+      if (body.length() > STREAMING_MIN_BYTES) {
+        if (encoding == null) {
+          // without this HttpURLConnection buffers the whole body in memory to work out its length.
+          con.setFixedLengthStreamingMode(body.length());
+        } else {
+          // the compressed length isn't known until it's been written, so send it chunked.
+          con.setChunkedStreamingMode(0);
+        }
+      }
+      writeBody(body, encoding, con.getOutputStream());
+    }
+    Response res = new Response();
+    res.code = con.getResponseCode();
+    res.headers = con.getHeaderFields();
+    // error responses come back on a different stream, and it needs draining just the same or
+    // the connection can't be reused.
+    InputStream in = res.code < 400 ? con.getInputStream() : con.getErrorStream();
+    return readResponse(res, in, handler);
+  }
+
+  // bodies up to this size are buffered rather than streamed (see exchange).
+  static final long STREAMING_MIN_BYTES = 1024 * 1024;
+}
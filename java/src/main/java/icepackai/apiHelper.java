@@ -1,25 +1,22 @@
 package icepackai;
 
 import icepackai.problem.Problem;
-import icepackai.problem.Problem.ProblemEnvelope.SubType;
-import icepackai.problem.Problem.SolverInfo.SolverMessageType;
-import icepackai.problem.Problem.SolverResponse.SolveState;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.io.File;
 
 import com.google.gson.Gson;
 import com.google.protobuf.*;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import org.apache.commons.io.IOUtils;
+import java.io.InterruptedIOException;
 
 public class apiHelper<T> {
   public String EndPoint;
@@ -31,12 +28,21 @@ public class apiHelper<T> {
   public String ApiToken;
 
   public apiHelper(Class<T> typeClass, String modeltype, String configFile) throws Exception {
+    this(typeClass, modeltype, configFile, HttpTransport.DEFAULT_MAX_CONNECTIONS);
+  }
+
+  // maxConnections caps how many connections this helper keeps open at once (across all threads
+  // using it).
+  public apiHelper(Class<T> typeClass, String modeltype, String configFile, int maxConnections)
+      throws Exception {
     outputType = typeClass;
     if (!models.containsKey(modeltype)) {
       throw new Exception("model type not recognised: \"" + modeltype
           + "\". should be one of:" + models.keySet().toString());
     }
     ModelType = modeltype;
+    parser = CodecRegistry.parser(modeltype, typeClass);
+    workers = workerExecutor(modeltype, maxConnections);
 
     File f = new File(configFile);
     if (!f.exists()) {
@@ -64,6 +70,12 @@ public class apiHelper<T> {
         EndPoint = json.endpoint + models.get(modeltype);
         ApiToken = json.apiToken;
         System.out.println("Endpoint: " + json.endpoint);
+        transport = HttpTransport.create(json.transport, ApiToken, maxConnections, Compression,
+            CompressionStats.forModel(modeltype));
+        governor = EndpointGovernor.forEndpoint(EndPoint);
+        if (json.rateLimits != null && json.rateLimits.containsKey(models.get(modeltype))) {
+          governor.configure(json.rateLimits.get(models.get(modeltype)));
+        }
 
       } catch (Exception e) {
         e.printStackTrace();
@@ -71,77 +83,291 @@ public class apiHelper<T> {
     }
   }
 
-  static HttpURLConnection con;
+  // how often requests are polled; adjust the fields before calling Get/submit.
+  public PollingPolicy Polling = new PollingPolicy();
+
+  // payload compression for uploads and downloads (adjust its fields, the transport keeps hold of
+  // this instance); bytes saved are counted in CompressionStats.forModel(ModelType).
+  public CompressionPolicy Compression = new CompressionPolicy();
+
+  // optional: when set, solve and submit answer requests they've already solved from here.
+  public SolutionCache Cache;
+
+  // optional: when set, upload skips payloads that were already uploaded (within its ttl).
+  public UploadRegistry Uploads;
 
-  private String postProblem(Problem.ProblemEnvelope p) throws IOException {
+  // which failed posts and polls are tried again: polls on 429, 5xx and io errors, posts only when
+  // the request can't have reached the api (429, connection refused).
+  public RetryPolicy Retry = new RetryPolicy();
+
+  // optional: when set, posted requests are recorded until they finish, so a restarted process
+  // can resume() them, and posting a payload that's still pending returns its request id rather
+  // than solving it again.
+  public RequestJournal Journal;
+
+  // receives each solver log entry once, as it arrives (set to null to silence the logs).
+  public SolverLogListener LogListener = SolverLogListener.CONSOLE;
+
+  // called with the poll count and latency of every request once it finishes.
+  public Consumer<PollStats> StatsListener;
+
+  public long getTotalPolls() {
+    return totalPolls.get();
+  }
+
+  public long getCompletedRequests() {
+    return completedRequests.get();
+  }
+
+  public double getMeanLatencyMillis() {
+    long n = completedRequests.get();
+    return n == 0 ? 0 : (double) totalLatencyMillis.get() / n;
+  }
+
+  private final AtomicLong totalPolls = new AtomicLong();
+  private final AtomicLong completedRequests = new AtomicLong();
+  private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+  // one transport per helper (picked by "transport" in config.json): safe to share this helper
+  // between threads, and the connections it opens are kept alive and reused between posts and
+  // polls.
+  private HttpTransport transport;
+
+  // paces requests to EndPoint across every helper in the process (limits from config.json).
+  private EndpointGovernor governor;
+
+  // posts waiting to be journaled, keyed on payload hash (see postRequestAsync).
+  private final Map<String, CompletableFuture<String>> postsInFlight =
+      new HashMap<String, CompletableFuture<String>>();
+
+  // Posts the envelope, retrying per the RetryPolicy, without parking a thread: waits for the
+  // governor and between retries are rescheduled on the scheduler, and only the http round trip
+  // runs on one of this helper's workers. Cancelling the future stops any further attempts.
+  private CompletableFuture<String> postProblem(HttpTransport.BodyWriter envelope) {
+    // System.out.println("Problem payload bytes: " + envelope.length()); // for the curious reader
+    CompletableFuture<String> requestId = new CompletableFuture<String>();
+    schedulePost(envelope, 1, requestId, 0);
+    return requestId;
+  }
+
+  private void schedulePost(HttpTransport.BodyWriter envelope, int attempt,
+      CompletableFuture<String> requestId, long delayMillis) {
+    onWorker(delayMillis, () -> {
+      if (requestId.isDone()) {
+        return;
+      }
+      long wait = governor.tryAcquire();
+      if (wait > 0) {
+        schedulePost(envelope, attempt, requestId, wait);
+        return;
+      }
+      try {
+        requestId.complete(postOnce(envelope));
+      } catch (IOException e) {
+        if (attempt >= Retry.maxAttempts || !Retry.retryablePost(e)) {
+          requestId.completeExceptionally(e);
+          return;
+        }
+        System.out.println("Post failed (attempt " + attempt + "), retrying: " + e.getMessage());
+        boolean rateLimited =
+            e instanceof ResponseCodeException && ((ResponseCodeException) e).code == 429;
+        // a 429 already holds us back in the governor.
+        schedulePost(
+            envelope, attempt + 1, requestId, rateLimited ? 0 : Retry.delayMillis(attempt));
+      } catch (RuntimeException e) {
+        requestId.completeExceptionally(e);
+      }
+    });
+  }
+
+  // Runs task on one of this helper's workers after delayMillis. The shared scheduler only keeps
+  // time: anything that can block (waiting on a connection of this helper's transport, the http
+  // round trip itself) happens on the worker, so one helper's slow requests never hold up another
+  // helper's polls.
+  private void onWorker(long delayMillis, Runnable task) {
+    scheduler.schedule(() -> workers.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  // one attempt; called holding a governor permit, which it gives back.
+  private String postOnce(HttpTransport.BodyWriter envelope) throws IOException {
     try {
-      URL myurl = new URL(EndPoint);
-      con = (HttpURLConnection) myurl.openConnection();
-      con.setDoOutput(true);
-      con.setDoInput(true);
-      con.setUseCaches(false);
-
-      con.setRequestMethod("POST");
-      con.setRequestProperty("Content-Type", "application/protobuf");
-      con.setRequestProperty("Authorization", "Apitoken " + ApiToken);
-
-      try (java.io.DataOutputStream wr = new DataOutputStream(con.getOutputStream())) {
-        // byte[] b = p.toByteArray();
-        // System.out.println("Problem payload bytes: " + b.length); // for the curious reader
-        wr.write(p.toByteArray());
-      }
-      if (con.getResponseCode() == 200) {
-        StringBuilder content = new StringBuilder();
-        try (java.io.BufferedReader br =
-                 new BufferedReader(new InputStreamReader(con.getInputStream()))) {
-          String line;
-          while ((line = br.readLine()) != null) {
-            content.append(line);
-            content.append(System.lineSeparator());
-          }
-        } catch (Exception e) {
-          System.out.println("Exception occurred: " + e.toString());
-          throw e;
+      return transport.post(EndPoint, envelope, res -> {
+        if (res.code == 429) {
+          governor.backOff(res.retryAfterMillis());
+        }
+        if (res.code != 200) {
+          throw new ResponseCodeException(res.code, res.bodyString());
         }
         Gson gson = new Gson();
-        PostResponse response = gson.fromJson(content.toString(), PostResponse.class);
+        PostResponse response = gson.fromJson(res.bodyString(), PostResponse.class);
         return (response.requestid);
-      } else {
-        StringBuilder content = new StringBuilder();
-        try (java.io.BufferedReader br =
-                 new BufferedReader(new InputStreamReader(con.getErrorStream()))) {
-          String line;
-          while ((line = br.readLine()) != null) {
-            content.append(line);
-            content.append(System.lineSeparator());
-          }
-        } catch (Exception e) {
-          System.out.println("Exception occurred: " + e.toString());
-          throw e;
+      });
+    } finally {
+      governor.release();
+    }
+  }
+
+  // the blocking calls (Post, solve, upload, ...) wait for the post on the caller's thread.
+  private static String await(CompletableFuture<String> post) throws Exception {
+    try {
+      return post.get();
+    } catch (InterruptedException e) {
+      post.cancel(false);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted waiting for a post to complete");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof Exception ? (Exception) cause : new Exception(cause);
+    }
+  }
+
+  // same as Post, but failures are thrown rather than printed.
+  private String postRequest(Object solveRequest) throws Exception {
+    return await(postRequestAsync(solveRequest));
+  }
+
+  private CompletableFuture<String> postRequestAsync(Object solveRequest) {
+    try {
+      RequestJournal journal = Journal;
+      if (journal == null) {
+        // the request is serialised straight into the connection inside its problem envelope.
+        return postProblem(envelope(solveRequest));
+      }
+      String hash = contentHash(solveRequest);
+      // the journal only hears of a post once it's answered, so the same payload posted again in
+      // the meantime waits on the post already under way rather than posting it a second time.
+      synchronized (postsInFlight) {
+        String pending = journal.pendingRequest(ModelType, hash);
+        if (pending != null) {
+          System.out.println("Request " + pending + " was already submitted, resuming it");
+          return CompletableFuture.completedFuture(pending);
         }
-        System.out.println("Unexpected response code " + con.getResponseCode()
-            + " from the api: " + content.toString());
-        return "";
+        CompletableFuture<String> inFlight = postsInFlight.get(hash);
+        if (inFlight != null) {
+          // a dependent, so cancelling it doesn't cancel the post for the caller who started it.
+          return inFlight.thenApply(requestId -> requestId);
+        }
+        CompletableFuture<String> post = postProblem(envelope(solveRequest));
+        CompletableFuture<String> journaled = post.thenApply(requestId -> {
+          try {
+            journal.submitted(requestId, ModelType, hash);
+          } catch (IOException e) {
+            throw new CompletionException(e);
+          }
+          return requestId;
+        });
+        cancelWith(journaled, post);
+        postsInFlight.put(hash, journaled);
+        // by now the journal has the request (or the post failed), so it can stop being shared.
+        journaled.whenComplete((requestId, e) -> {
+          synchronized (postsInFlight) {
+            postsInFlight.remove(hash, journaled);
+          }
+        });
+        return journaled;
       }
-    } finally {
-      con.disconnect();
+    } catch (Exception e) {
+      CompletableFuture<String> failed = new CompletableFuture<String>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  // cancelling a dependent future doesn't reach the one it came from; this passes it on.
+  private static void cancelWith(CompletableFuture<?> dependent, CompletableFuture<?> source) {
+    dependent.whenComplete((res, e) -> {
+      if (e instanceof CancellationException) {
+        source.cancel(false);
+      }
+    });
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+  }
+
+  // Requests are protobuf messages, or already serialised ones of known length such as the
+  // bodies ModelWriter.solveRequest/cachedModel stream from a file.
+  private HttpTransport.BodyWriter envelope(Object solveRequest) throws Exception {
+    if (solveRequest instanceof HttpTransport.BodyWriter) {
+      return EnvelopeCodec.input(ModelType, (HttpTransport.BodyWriter) solveRequest);
+    }
+    return EnvelopeCodec.input(ModelType, asMessage(solveRequest));
+  }
+
+  private String contentHash(Object solveRequest) throws Exception {
+    if (solveRequest instanceof HttpTransport.BodyWriter) {
+      return ContentHash.of(ModelType, (HttpTransport.BodyWriter) solveRequest);
+    }
+    return ContentHash.of(ModelType, asMessage(solveRequest));
+  }
+
+  private static MessageLite asMessage(Object solveRequest) throws Exception {
+    if (!(solveRequest instanceof MessageLite)) {
+      throw new Exception("expected a protobuf message or an HttpTransport.BodyWriter, got: "
+          + solveRequest.getClass().getName());
+    }
+    return (MessageLite) solveRequest;
+  }
+
+  // Post + Get, except that a request which has been solved before is answered from the Cache.
+  public T solve(Object solveRequest) throws Exception {
+    String hash = cacheKey(solveRequest);
+    T cached = fromCache(hash);
+    if (cached != null) {
+      return cached;
+    }
+    T solution = Get(postRequest(solveRequest));
+    toCache(hash, solution);
+    return solution;
+  }
+
+  // null when there's no cache attached.
+  private String cacheKey(Object solveRequest) throws Exception {
+    SolutionCache cache = Cache;
+    return cache == null ? null : contentHash(solveRequest);
+  }
+
+  private T fromCache(String hash) throws Exception {
+    SolutionCache cache = Cache;
+    byte[] bytes = hash == null || cache == null ? null : cache.get(hash);
+    if (bytes == null) {
+      return null;
+    }
+    // cached arrays are never modified, so the parsed solution can alias them rather than copy.
+    CodedInputStream in = CodedInputStream.newInstance(bytes);
+    in.enableAliasing(true);
+    return parser.parseFrom(in);
+  }
+
+  private void toCache(String hash, T solution) throws IOException {
+    SolutionCache cache = Cache;
+    if (hash != null && cache != null && solution != null) {
+      cache.put(hash, ((MessageLite) solution).toByteArray());
     }
   }
 
+  // Post for data that's uploaded once and referenced by id afterwards (CachedModel,
+  // CachedTransitSet): with Uploads set, identical payloads get the id of the earlier upload back
+  // without being sent again. Failures are thrown.
+  public String upload(Object payload) throws Exception {
+    UploadRegistry uploads = Uploads;
+    // uploads are never polled, so they stay out of the Journal.
+    if (uploads == null) {
+      return await(postProblem(envelope(payload)));
+    }
+    String hash = contentHash(payload);
+    String requestId = uploads.get(hash);
+    if (requestId == null) {
+      requestId = await(postProblem(envelope(payload)));
+      uploads.put(hash, requestId);
+    }
+    return requestId;
+  }
+
   public String Post(Object solveRequest) {
     try {
-      byte[] b = (byte[]) solveRequest.getClass()
-                     .getMethod("toByteArray")
-                     .invoke(solveRequest, new Object[] {});
-      // System.out.println("Serialised model in " + b.length + " bytes."); // for the curious
-      // reader System.out.println("converting to problem envelope");
-      Problem.ProblemEnvelope p = Problem.ProblemEnvelope.newBuilder()
-                                      .setType(ModelType)
-                                      .setSubType(SubType.INPUT)
-                                      .setContent(ByteString.copyFrom(b))
-                                      .build();
-      // System.out.println("serialising envelope");
-      String requestId = postProblem(p);
+      String requestId = postRequest(solveRequest);
       return (requestId);
     } catch (Exception e) {
       System.out.println("An exception occurred: " + e.toString());
@@ -149,64 +375,307 @@ public class apiHelper<T> {
     return "";
   }
 
+  public static final int DEFAULT_POST_CONCURRENCY = 8;
+
+  public List<PostResult> postAll(List<?> solveRequests) throws InterruptedException {
+    return postAll(solveRequests, DEFAULT_POST_CONCURRENCY);
+  }
+
+  // Posts a batch of requests, at most maxConcurrent at a time. The results are in the same order
+  // as the requests, and a failed post carries its exception instead of an empty request id, so
+  // one bad item doesn't sink (or hide in) the rest of the batch.
+  public List<PostResult> postAll(List<?> solveRequests, int maxConcurrent)
+      throws InterruptedException {
+    // the posts run on the helper's own threads; the window just stops the caller starting more
+    // than maxConcurrent of them before earlier ones finish.
+    Semaphore window = new Semaphore(Math.max(1, maxConcurrent));
+    List<CompletableFuture<String>> posts =
+        new ArrayList<CompletableFuture<String>>(solveRequests.size());
+    List<PostResult> results = new ArrayList<PostResult>(solveRequests.size());
+    try {
+      for (Object solveRequest : solveRequests) {
+        window.acquire();
+        CompletableFuture<String> post = postRequestAsync(solveRequest);
+        posts.add(post);
+        post.whenComplete((requestId, e) -> window.release());
+      }
+      for (CompletableFuture<String> post : posts) {
+        try {
+          results.add(new PostResult(post.get(), null));
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          results.add(new PostResult(
+              "", cause instanceof Exception ? (Exception) cause : new Exception(cause)));
+        }
+      }
+    } catch (InterruptedException e) {
+      for (CompletableFuture<String> post : posts) {
+        post.cancel(false);
+      }
+      throw e;
+    }
+    return results;
+  }
+
   public T Get(String requestId) throws Exception {
-    if (requestId == "") {
+    checkRequestId(requestId);
+    System.out.println("Getting response");
+    PollStats stats = new PollStats(requestId);
+    while (true) {
+      Thread.sleep(Polling.nextDelayMillis(stats)); // Snooze for a moment
+      for (long wait; (wait = governor.tryAcquire()) > 0;) {
+        Thread.sleep(wait); // our own thread, so it's fine to wait here.
+      }
+      EnvelopeCodec.Output<T> solRes = fetchResponse(stats);
+      if (solRes != null && solRes.isFinished()) {
+        finished(stats);
+        return decodeSolution(solRes);
+      }
+      checkDeadline(stats);
+    }
+  }
+
+  // Non-blocking version of solve. The polls are timed by a small shared scheduler and the posts
+  // and polls themselves run on this helper's workers, so any number of solves can be in flight
+  // without parking a thread for each one, and a slow upload never holds up another helper's polls.
+  public CompletableFuture<T> submit(Object solveRequest) {
+    CompletableFuture<T> result = new CompletableFuture<T>();
+    long submitted = System.nanoTime();
+    workers.execute(() -> {
+      if (result.isDone()) {
+        return; // cancelled before it was posted.
+      }
+      try {
+        String hash = cacheKey(solveRequest);
+        T cached = fromCache(hash);
+        if (cached != null) {
+          result.complete(cached);
+          return;
+        }
+        if (hash != null) {
+          result.thenAccept(solution -> {
+            try {
+              toCache(hash, solution);
+            } catch (IOException e) {
+              System.out.println("Unable to cache solution: " + e.toString());
+            }
+          });
+        }
+        CompletableFuture<String> post = postRequestAsync(solveRequest);
+        cancelWith(result, post);
+        post.whenComplete((requestId, e) -> {
+          if (e != null) {
+            result.completeExceptionally(unwrap(e));
+          } else {
+            schedulePoll(new PollStats(requestId, submitted), result);
+          }
+        });
+      } catch (Exception e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  // Non-blocking version of Get for a request that has already been posted.
+  public CompletableFuture<T> poll(String requestId) {
+    CompletableFuture<T> result = new CompletableFuture<T>();
+    try {
+      checkRequestId(requestId);
+      schedulePoll(new PollStats(requestId), result);
+    } catch (Exception e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  // Polls every request the Journal still has pending for this model type, e.g. ones posted before
+  // the process restarted. Keyed on request id; each future completes as its poll(...) would.
+  public Map<String, CompletableFuture<T>> resume() {
+    Map<String, CompletableFuture<T>> resumed = new LinkedHashMap<String, CompletableFuture<T>>();
+    RequestJournal journal = Journal;
+    if (journal != null) {
+      for (RequestJournal.Entry e : journal.pending(ModelType)) {
+        System.out.println("Resuming request " + e);
+        resumed.put(e.requestId, poll(e.requestId));
+      }
+    }
+    return resumed;
+  }
+
+  private void schedulePoll(PollStats stats, CompletableFuture<T> result) {
+    schedulePoll(stats, result, Polling.nextDelayMillis(stats));
+  }
+
+  private void schedulePoll(PollStats stats, CompletableFuture<T> result, long delayMillis) {
+    onWorker(delayMillis, () -> {
+      if (result.isDone()) {
+        return; // cancelled by the caller, stop polling.
+      }
+      long wait = governor.tryAcquire();
+      if (wait > 0) {
+        schedulePoll(stats, result, wait); // the endpoint is busy or paused; try again then.
+        return;
+      }
+      try {
+        EnvelopeCodec.Output<T> solRes = fetchResponse(stats);
+        if (solRes != null && solRes.isFinished()) {
+          finished(stats);
+          result.complete(decodeSolution(solRes));
+        } else {
+          checkDeadline(stats);
+          schedulePoll(stats, result);
+        }
+      } catch (Exception e) {
+        result.completeExceptionally(e);
+      }
+    });
+  }
+
+  private void checkRequestId(String requestId) throws Exception {
+    if (requestId == null || requestId.isEmpty()) {
       throw new Exception(
           "No request ID provided. Did you get a valid post response? Are you rate limited or is the service enabled on your key?");
     }
+  }
+
+  private void checkDeadline(PollStats stats) throws TimeoutException {
+    if (Polling.expired(stats)) {
+      throw new TimeoutException("Request " + stats.requestId + " did not complete within "
+          + Polling.deadlineMillis + " ms (" + stats.polls + " polls)");
+    }
+  }
+
+  private void finished(PollStats stats) {
+    journalFinished(stats.requestId);
+    stats.latencyMillis = stats.elapsedMillis();
+    totalPolls.addAndGet(stats.polls);
+    completedRequests.incrementAndGet();
+    totalLatencyMillis.addAndGet(stats.latencyMillis);
+    if (StatsListener != null) {
+      StatsListener.accept(stats);
+    }
+  }
+
+  private void journalFinished(String requestId) {
+    RequestJournal journal = Journal;
+    if (journal != null) {
+      try {
+        journal.finished(requestId);
+      } catch (IOException e) {
+        System.out.println("Unable to update the request journal: " + e.toString());
+      }
+    }
+  }
+
+  // returns null when the server asked us to back off (429/503) or the poll failed in a way the
+  // RetryPolicy retries; the Retry-After hint (or retry delay) is kept on the stats so the next
+  // poll waits at least that long. Called holding a governor permit, which it gives back.
+  private EnvelopeCodec.Output<T> fetchResponse(PollStats stats) throws IOException {
+    stats.polls++;
+    EnvelopeCodec.Output<T> solRes;
     try {
-      System.out.println("Getting response");
-      while (true) {
-        URL myurl = new URL(EndPoint + requestId);
-        con = (HttpURLConnection) myurl.openConnection();
-        con.setDoOutput(true);
-        con.setDoInput(true);
-        con.setUseCaches(false);
-
-        con.setRequestMethod("GET");
-        con.setRequestProperty("Content-Type", "application/protobuf");
-        con.setRequestProperty("Authorization", "Apitoken " + ApiToken);
-        byte[] bytes = IOUtils.toByteArray(con.getInputStream());
-        // System.out.println("Retrieved response with " + bytes.length + " bytes"); // again, for
-        // those interested.
-        Problem.ProblemEnvelope p = Problem.ProblemEnvelope.parseFrom(bytes);
-        // System.out.println("Parsed problem envelope");
-        Problem.SolverResponse solRes = Problem.SolverResponse.parseFrom(p.getContent());
-        con.disconnect();
-        Problem.SolverInfo lastInfo = null;
-        for (Problem.SolverInfo info : solRes.getLogsList()) {
-          System.out.printf(info.toString().replace("%",
-              "%%")); // side note, java handles % signs in a particular manner
-                      // so you need to convert them to a %% unless you like hanlding exceptions.
-          lastInfo = info;
+      solRes = transport.get(EndPoint + stats.requestId, res -> {
+        stats.retryAfterMillis = res.retryAfterMillis();
+        if (res.code == 429 || res.code == 503) {
+          governor.backOff(stats.retryAfterMillis);
+          return null;
         }
-        if (solRes.getState() != SolveState.COMPLETED
-            && lastInfo.getType() != SolverMessageType.ERROR) {
-          Thread.sleep(1000); // Snooze for a moment
-        } else {
-          if (solRes.hasSolution()) {
-            // System.out.printf("Returning solution.");
-            T solution =
-                (T) outputType
-                    .getMethod("parseFrom", new Class[] {com.google.protobuf.ByteString.class})
-                    .invoke(outputType, solRes.getSolution());
-            // a lol-worthy line of code. Basically get the method from the target class and attempt
-            // to deserialise it as the target object type. I guess if the language supports this
-            // kind of tom-foolery it's okay?
-            return solution;
-          } else {
-            System.out.printf("No solution returned.");
-            return null;
-          }
+        if (res.code != 200) {
+          throw new ResponseCodeException(res.code, res.bodyString());
         }
+        // the envelope, solver response and solution are all parsed in one pass over the stream.
+        return EnvelopeCodec.readOutput(res.body, parser, stats.logsSeen);
+      });
+      stats.failures = 0;
+    } catch (IOException e) {
+      if (Retry.retryable(e) && ++stats.failures < Retry.maxAttempts) {
+        System.out.println("Poll of " + stats.requestId + " failed, retrying: " + e.getMessage());
+        stats.retryAfterMillis =
+            Math.max(stats.retryAfterMillis, Retry.delayMillis(stats.failures));
+        return null;
       }
+      if (gone(e)) {
+        journalFinished(stats.requestId); // the api won't give us this one; stop resuming it.
+      }
+      throw e;
     } finally {
-      con.disconnect();
+      governor.release();
+    }
+    if (solRes != null) {
+      publishLogs(stats, solRes);
+    }
+    return solRes;
+  }
+
+  // whether a failed poll means the request will never be answered: a 4xx other than 429 (which
+  // the RetryPolicy retries) and 401/403 (a bad token, which can be fixed before resuming). A 5xx
+  // or an io error the retries didn't get past may clear up, so the request stays in the Journal.
+  private static boolean gone(IOException e) {
+    if (!(e instanceof ResponseCodeException)) {
+      return false;
+    }
+    int code = ((ResponseCodeException) e).code;
+    return code >= 400 && code < 500 && code != 429 && code != 401 && code != 403;
+  }
+
+  // the server sends the full log with every poll; only pass on what we haven't seen yet.
+  private void publishLogs(PollStats stats, EnvelopeCodec.Output<T> solRes) {
+    SolverLogListener listener = LogListener;
+    if (listener != null) {
+      for (Problem.SolverInfo info : solRes.newLogs) {
+        listener.onLog(stats.requestId, info);
+      }
+    }
+    stats.logsSeen = Math.max(stats.logsSeen, solRes.logCount);
+  }
+
+  private T decodeSolution(EnvelopeCodec.Output<T> solRes) throws Exception {
+    if (solRes.hasSolution) {
+      // System.out.printf("Returning solution.");
+      return solRes.solution;
+    } else {
+      System.out.printf("No solution returned.");
+      return null;
     }
   }
 
+  // The posts and polls of submit/poll: one thread per connection the transport allows, started on
+  // demand and let go when idle. Uploads can take a while, and a request may have to wait for a
+  // connection, so they get this helper's own threads rather than the shared scheduler's.
+  private static ExecutorService workerExecutor(String modelType, int threads) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), r -> {
+          Thread t =
+              new Thread(r, "apiHelper-worker-" + modelType + "-" + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  private final ExecutorService workers;
+
+  // shared by every helper: the threads only wait out the delays before polls and posts and then
+  // hand them to the helper's workers, so they never block on the network.
+  private static final ScheduledExecutorService scheduler =
+      Executors.newScheduledThreadPool(4, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "apiHelper-poller-" + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
   Class<T> outputType;
 
+  // the generated parser for T, resolved once from the codec registry.
+  private Parser<T> parser;
+
   Map<String, String> models = new HashMap<String, String>() {
     {
       put("tsp-mcvfz472gty6", "vehicle-router/solve/");
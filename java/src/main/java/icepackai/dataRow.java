@@ -1,10 +1,9 @@
 package icepackai;
 
 import java.util.*;
+import java.util.function.Consumer;
 
-import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.nio.charset.Charset;
 
 public class dataRow {
   public dataRow(String _id, float x, float y) {
@@ -31,26 +30,26 @@ public class dataRow {
 
   public static List<dataRow> LoadData(String filename) throws Exception {
     List<dataRow> res = new ArrayList<dataRow>();
-    List<String> lines = Files.readAllLines(Paths.get(filename), Charset.defaultCharset());
-
-    Boolean ns3format =
-        (lines.get(0).split(",")[0].equals("id") && lines.get(0).split(",")[1].equals("name"));
+    StreamData(filename, res::add);
+    return res;
+  }
 
-    for (int i = 1; i < lines.size(); i++) {
-      String line = lines.get(i);
-      String[] items = line.split(",");
-      if (items.length < 4) {
-        res.add(new dataRow(items[0], Float.parseFloat(items[1]), Float.parseFloat(items[2])));
-      } else {
-        if (ns3format) {
-          res.add(new dataRow(items[0], Float.parseFloat(items[2]), Float.parseFloat(items[3]), 0,
-              0, Float.parseFloat(items[4])));
+  // Reads the file a line at a time, handing each row over as it's parsed, so large extracts
+  // never sit in memory as a whole. Columns are found by header name (see OrderTable.Columns).
+  // Rows with fewer than 4 fields only carry id, X and Y. Ids are kept exactly as written, quotes
+  // and all. OrderTable.load reads the same columns into arrays instead of rows.
+  public static void StreamData(String filename, Consumer<dataRow> sink) throws Exception {
+    try (CsvReader csv = new CsvReader(Paths.get(filename))) {
+      OrderTable.Columns c = new OrderTable.Columns(csv);
+      while (csv.next()) {
+        if (csv.fieldCount() < 4) {
+          sink.accept(new dataRow(csv.getString(c.id), csv.getFloat(c.x), csv.getFloat(c.y)));
         } else {
-          res.add(new dataRow(items[0], Float.parseFloat(items[1]), Float.parseFloat(items[2]),
-              Float.parseFloat(items[3]), Float.parseFloat(items[4]), Float.parseFloat(items[5])));
+          sink.accept(new dataRow(csv.getString(c.id), csv.getFloat(c.x), csv.getFloat(c.y),
+              c.pickupTime < 0 ? 0 : csv.getFloat(c.pickupTime),
+              c.dropoffTime < 0 ? 0 : csv.getFloat(c.dropoffTime), csv.getFloat(c.quantity)));
         }
       }
     }
-    return res;
   }
 };
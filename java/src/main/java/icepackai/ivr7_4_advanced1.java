@@ -4,6 +4,7 @@ import icepackai.IVR7.Ivr7Kt461V8Eoaif;
 import icepackai.IVR7.Ivr7Kt461V8Eoaif.SolveRequest.SolveType;
 import icepackai.IVRData.IvrdataO43E0Dvs78Zq;
 
+import java.nio.file.Paths;
 import java.util.*;
 
 // IVR7 Advanced example:
@@ -57,7 +58,10 @@ public class ivr7_4_advanced1 {
     IvrdataO43E0Dvs78Zq.CachedModel dataModel =
         IvrdataO43E0Dvs78Zq.CachedModel.newBuilder().setModel(model.build().toByteString()).build();
     // epic: we just saved our model as a byte stream into this data payload.
-    String modelID = data_api.Post(dataModel);
+    // the registry remembers what we've uploaded before, so if the model hasn't changed since the
+    // last run we get the same model id back without sending it again.
+    data_api.Uploads = new UploadRegistry(Paths.get(uploadRegistryFile));
+    String modelID = data_api.upload(dataModel);
     // so now on the main builder, we don't have to set the model, just the model
     // id!
 
@@ -90,9 +94,13 @@ public class ivr7_4_advanced1 {
     builder.setSolveType(SolveType.Evaluate);
     System.out.println(builder.build().toString()); // so a very simple follow up request - but with
                                                     // the evaluate sequence
-    requestId = api.Post(builder.build()); // send the model to the api
-    Ivr7Kt461V8Eoaif.SolutionResponse evalSolution =
-        api.Get(requestId); // get the response (which is cast internally)
+    // an evaluate session sends just the task sequences against the model id, and polls quickly:
+    // it's meant for evaluating edits interactively (e.g. a planner dragging stops between
+    // routes), where each new candidate replaces the ones still in flight.
+    Ivr7Kt461V8Eoaif.SolutionResponse evalSolution;
+    try (EvaluateSession session = new EvaluateSession(configFile, modelID)) {
+      evalSolution = session.evaluate(builder.getRoutesList()).get();
+    }
     ivr7helper.printSolution(evalSolution, true, true, true, true);
 
     if (Math.abs(evalSolution.getObjective() - Solution.getObjective()) > 0.01f) {
@@ -110,5 +118,6 @@ public class ivr7_4_advanced1 {
   private apiHelper<Ivr7Kt461V8Eoaif.SolutionResponse> api;
 
   private String configFile;
+  private String uploadRegistryFile = "../upload_registry.txt";
   private List<dataRow> data;
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import icepackai.IVR7.Ivr7Kt461V8Eoaif;
 import icepackai.IVR7.Ivr7Kt461V8Eoaif.SolveRequest.SolveType;
 import icepackai.IVRData.IvrdataO43E0Dvs78Zq;
 
+import java.nio.file.Paths;
 import java.util.*;
 
 // IVR7 Advanced example:
@@ -79,27 +80,31 @@ public class ivr7_5_advanced2 {
     // you have two ways of doing this. Upload it via the data-api, or upload it as
     // part of the model.
     Boolean dataUpload = true;
+
+    // the same overrides either way: zero from every location to the vehicle-site. The builder
+    // shares one copy of each id between the elements (and for a whole custom matrix, can leave out
+    // the elements that match the road network - see TransitSetBuilder).
+    TransitSetBuilder ts = new TransitSetBuilder();
+    for (int i = 0; i < model.getLocationsCount(); i++) {
+      ts.put(model.getLocations(i).getId(), "vehicle-site", 0.0f);
+    }
     // it's nice to illustrate this if you've enabled the services on your key
     // but you can set this to false to get a feel for the other code path if
     // needed.
     if (dataUpload) {
-      IvrdataO43E0Dvs78Zq.TransitSet.Builder ts = IvrdataO43E0Dvs78Zq.TransitSet.newBuilder();
-      for (int i = 0; i < model.getLocationsCount(); i++) {
-        ts.addTransits(IvrdataO43E0Dvs78Zq.TransitSet.TransitValue.newBuilder()
-                           .setFromId(model.getLocations(i).getId())
-                           .setToId("vehilce-site")
-                           .setValue(0.0f)
-                           .build());
-      }
       IvrdataO43E0Dvs78Zq.CachedTransitSet datamodel =
-          IvrdataO43E0Dvs78Zq.CachedTransitSet.newBuilder().setTransitSet(ts).build();
+          IvrdataO43E0Dvs78Zq.CachedTransitSet.newBuilder()
+              .setTransitSet(ts.buildDataTransitSet())
+              .build();
       System.out.println(datamodel.toString());
       apiHelper<IvrdataO43E0Dvs78Zq.CachedTransitSet> data_api =
           new apiHelper<IvrdataO43E0Dvs78Zq.CachedTransitSet>(
               IvrdataO43E0Dvs78Zq.CachedTransitSet.class, "ivrdata-o43e0dvs78zq", configFile);
 
       // epic: we just saved our model as a byte stream into this data payload.
-      String transitModelID = data_api.Post(datamodel);
+      // (unchanged transit sets are only uploaded once, see ivr7_4_advanced1)
+      data_api.Uploads = new UploadRegistry(Paths.get(uploadRegistryFile));
+      String transitModelID = data_api.upload(datamodel);
 
       // now create the additional transit generators and link them to the data that
       // has been uploaded
@@ -115,21 +120,14 @@ public class ivr7_5_advanced2 {
     } else {
       // embed the zero elements in the matrix in the payload directly (rather than
       // through a data-upload)
-      Ivr7Kt461V8Eoaif.TransitSet.Builder ts = Ivr7Kt461V8Eoaif.TransitSet.newBuilder();
-      for (int i = 0; i < model.getLocationsCount(); i++) {
-        ts.addTransits(Ivr7Kt461V8Eoaif.TransitSet.TransitValue.newBuilder()
-                           .setFromId(model.getLocations(i).getId())
-                           .setToId("vehilce-site")
-                           .setValue(0.0f)
-                           .build());
-      }
+      Ivr7Kt461V8Eoaif.TransitSet transitSet = ts.buildModelTransitSet();
       model.addTransitGenerators(Ivr7Kt461V8Eoaif.TransitGenerator.newBuilder()
                                      .setId("custom_distance")
-                                     .setTransitSet(ts.build()));
+                                     .setTransitSet(transitSet));
       // or we're explicily providing all the data.
       model.addTransitGenerators(Ivr7Kt461V8Eoaif.TransitGenerator.newBuilder()
                                      .setId("custom_time")
-                                     .setTransitSet(ts.build()));
+                                     .setTransitSet(transitSet));
     }
 
     // now the last step, we need to tell the vehicles that they should use these
@@ -203,5 +201,6 @@ public class ivr7_5_advanced2 {
   private apiHelper<Ivr7Kt461V8Eoaif.SolutionResponse> api;
 
   private String configFile;
+  private String uploadRegistryFile = "../upload_registry.txt";
   private List<dataRow> data;
 }
\ No newline at end of file
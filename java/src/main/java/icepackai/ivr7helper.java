@@ -41,74 +41,123 @@ public class ivr7helper {
       Ivr7Kt461V8Eoaif.Model.Builder m, List<dataRow> d, float windowStart, float windowEnd) {
     for (int i = 0; i < d.size(); i++) {
       dataRow loc = d.get(i);
-      if (windowEnd == 0.0f && windowStart == 0.0f) {
-        m.addLocations(
-            Ivr7Kt461V8Eoaif.Location.newBuilder()
-                .setId(loc.id)
-                .setGeocode(
-                    Ivr7Kt461V8Eoaif.Geocode.newBuilder().setLatitude(loc.Y).setLongitude(loc.X))
-                .build());
-      } else {
-        m.addLocations(
-            Ivr7Kt461V8Eoaif.Location.newBuilder()
-                .setId(loc.id)
-                .setGeocode(
-                    Ivr7Kt461V8Eoaif.Geocode.newBuilder().setLatitude(loc.Y).setLongitude(loc.X))
-                .addAttributes(
-                    Ivr7Kt461V8Eoaif.Location.Attribute.newBuilder()
-                        .setDimensionId("time")
-                        .addArrivalWindows(
-                            Ivr7Kt461V8Eoaif.Window.newBuilder().setStart(8 * 60f).setEnd(
-                                14 * 60f)))
-                .build());
-      }
+      m.addLocations(makeLocation(loc.id, loc.X, loc.Y, windowStart, windowEnd));
+    }
+  }
+
+  public static void makeLocations(
+      Ivr7Kt461V8Eoaif.Model.Builder m, OrderTable d, float windowStart, float windowEnd) {
+    for (int i = 0; i < d.size(); i++) {
+      m.addLocations(makeLocation(d, i, windowStart, windowEnd));
     }
   }
 
+  // the location for row i of the table (see makeLocations).
+  public static Ivr7Kt461V8Eoaif.Location makeLocation(
+      OrderTable d, int i, float windowStart, float windowEnd) {
+    return makeLocation(d.id(i), d.x(i), d.y(i), windowStart, windowEnd);
+  }
+
+  // the location every makeLocations overload builds; x is the longitude, y the latitude.
+  public static Ivr7Kt461V8Eoaif.Location makeLocation(
+      String id, float x, float y, float windowStart, float windowEnd) {
+    if (windowEnd == 0.0f && windowStart == 0.0f) {
+      return Ivr7Kt461V8Eoaif.Location.newBuilder()
+          .setId(id)
+          .setGeocode(Ivr7Kt461V8Eoaif.Geocode.newBuilder().setLatitude(y).setLongitude(x))
+          .build();
+    }
+    return Ivr7Kt461V8Eoaif.Location.newBuilder()
+        .setId(id)
+        .setGeocode(Ivr7Kt461V8Eoaif.Geocode.newBuilder().setLatitude(y).setLongitude(x))
+        .addAttributes(Ivr7Kt461V8Eoaif.Location.Attribute.newBuilder()
+                           .setDimensionId("time")
+                           .addArrivalWindows(
+                               Ivr7Kt461V8Eoaif.Window.newBuilder().setStart(8 * 60f).setEnd(
+                                   14 * 60f)))
+        .build();
+  }
+
   public static void makeLocations(Ivr7Kt461V8Eoaif.Model.Builder m, List<dataRow> d) {
     makeLocations(m, d, 0.0f, 0.0f);
   }
 
+  public static void makeLocations(Ivr7Kt461V8Eoaif.Model.Builder m, OrderTable d) {
+    makeLocations(m, d, 0.0f, 0.0f);
+  }
+
   public static void makeJobTimeCap(Ivr7Kt461V8Eoaif.Model.Builder m, List<dataRow> d,
       List<Integer> srcs, List<Integer> dests) throws Exception {
     if (srcs.size() != dests.size()) {
       throw new Exception("Expected srcs.Count == dests.Count");
     }
     for (int i = 0; i < srcs.size(); i++) {
-      Integer si = srcs.get(i);
-      Integer di = dests.get(i);
-      Ivr7Kt461V8Eoaif.Job.Builder job = Ivr7Kt461V8Eoaif.Job.newBuilder();
-      job.setId("job_" + d.get(di).id);
-      job.setPickupTask(Ivr7Kt461V8Eoaif.Job.Task.newBuilder()
-                            .setTaskId("pickup_" + d.get(di).id)
-                            .setLocationId(d.get(si).id)
-                            .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
-                                               .setDimensionId("time")
-                                               .setQuantity(d.get(di).pickupTime)
-                                               .build())
-                            .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
-                                               .setDimensionId("capacity")
-                                               .setQuantity(d.get(di).quantity)
-                                               .build())
-                            .build());
-
-      job.setDropoffTask(Ivr7Kt461V8Eoaif.Job.Task.newBuilder()
-                             .setTaskId("dropoff_" + d.get(di).id)
-                             .setLocationId(d.get(di).id)
-                             .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
-                                                .setDimensionId("time")
-                                                .setQuantity(d.get(di).dropoffTime)
-                                                .build())
-                             .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
-                                                .setDimensionId("capacity")
-                                                .setQuantity(-d.get(di).quantity)
-                                                .build())
-                             .build());
-      job.setPenalty(10000f);
-      m.addJobs(job.build());
+      dataRow order = d.get(dests.get(i));
+      m.addJobs(makeJob(order.id, d.get(srcs.get(i)).id, order.pickupTime, order.dropoffTime,
+          order.quantity));
     }
   }
 
+  public static void makeJobTimeCap(Ivr7Kt461V8Eoaif.Model.Builder m, OrderTable d,
+      List<Integer> srcs, List<Integer> dests) throws Exception {
+    if (srcs.size() != dests.size()) {
+      throw new Exception("Expected srcs.Count == dests.Count");
+    }
+    for (int i = 0; i < srcs.size(); i++) {
+      m.addJobs(makeJob(d, srcs.get(i), dests.get(i)));
+    }
+  }
+
+  // a job picking up the order in row di at the location in row si and dropping it off at its own
+  // location (see makeJobTimeCap).
+  public static Ivr7Kt461V8Eoaif.Job makeJob(OrderTable d, int si, int di) {
+    return makeJob(d.id(di), d.id(si), d.pickupTime(di), d.dropoffTime(di), d.quantity(di));
+  }
+
+  // the job every makeJobTimeCap overload builds: order id is picked up at location fromId and
+  // dropped off at its own location, id.
+  public static Ivr7Kt461V8Eoaif.Job makeJob(
+      String id, String fromId, float pickupTime, float dropoffTime, float quantity) {
+    Ivr7Kt461V8Eoaif.Job.Builder job = Ivr7Kt461V8Eoaif.Job.newBuilder();
+    job.setId(JOB_ID_PREFIX + id);
+    job.setPickupTask(Ivr7Kt461V8Eoaif.Job.Task.newBuilder()
+                          .setTaskId(PICKUP_ID_PREFIX + id)
+                          .setLocationId(fromId)
+                          .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
+                                             .setDimensionId(JOB_TIME)
+                                             .setQuantity(pickupTime)
+                                             .build())
+                          .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
+                                             .setDimensionId(JOB_CAPACITY)
+                                             .setQuantity(quantity)
+                                             .build())
+                          .build());
+
+    job.setDropoffTask(Ivr7Kt461V8Eoaif.Job.Task.newBuilder()
+                           .setTaskId(DROPOFF_ID_PREFIX + id)
+                           .setLocationId(id)
+                           .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
+                                              .setDimensionId(JOB_TIME)
+                                              .setQuantity(dropoffTime)
+                                              .build())
+                           .addAttributes(Ivr7Kt461V8Eoaif.Job.Task.Attribute.newBuilder()
+                                              .setDimensionId(JOB_CAPACITY)
+                                              .setQuantity(-quantity)
+                                              .build())
+                           .build());
+    job.setPenalty(JOB_PENALTY);
+    return job.build();
+  }
+
+  // the dimensions, id prefixes and penalty of makeJob's jobs (ivr8helper's are the same jobs, and
+  // ModelWriter.writeJob encodes them).
+  static final String JOB_TIME = "time";
+  static final String JOB_CAPACITY = "capacity";
+  static final String JOB_ID_PREFIX = "job_";
+  static final String PICKUP_ID_PREFIX = "pickup_";
+  static final String DROPOFF_ID_PREFIX = "dropoff_";
+  static final float JOB_PENALTY = 10000f;
+
   public static Ivr7Kt461V8Eoaif.VehicleCostClass makeVccSimple(String name, float fixedcost,
       float time_transit_costcoef, float time_loc_costcoef, float time_task_costcoef,
       float time_slack_costcoef, float distance_transit_costcoef) {
@@ -41,74 +41,114 @@ public class ivr8helper {
       Ivr8Yni1C9K2Swof.Model.Builder m, List<dataRow> d, float windowStart, float windowEnd) {
     for (int i = 0; i < d.size(); i++) {
       dataRow loc = d.get(i);
-      if (windowEnd == 0.0f && windowStart == 0.0f) {
-        m.addLocations(
-            Ivr8Yni1C9K2Swof.Location.newBuilder()
-                .setId(loc.id)
-                .setGeocode(
-                    Ivr8Yni1C9K2Swof.Geocode.newBuilder().setLatitude(loc.Y).setLongitude(loc.X))
-                .build());
-      } else {
-        m.addLocations(
-            Ivr8Yni1C9K2Swof.Location.newBuilder()
-                .setId(loc.id)
-                .setGeocode(
-                    Ivr8Yni1C9K2Swof.Geocode.newBuilder().setLatitude(loc.Y).setLongitude(loc.X))
-                .addAttributes(
-                    Ivr8Yni1C9K2Swof.Location.Attribute.newBuilder()
-                        .setDimensionId("time")
-                        .addArrivalWindows(
-                            Ivr8Yni1C9K2Swof.Window.newBuilder().setStart(8 * 60f).setEnd(
-                                14 * 60f)))
-                .build());
-      }
+      m.addLocations(makeLocation(loc.id, loc.X, loc.Y, windowStart, windowEnd));
+    }
+  }
+
+  public static void makeLocations(
+      Ivr8Yni1C9K2Swof.Model.Builder m, OrderTable d, float windowStart, float windowEnd) {
+    for (int i = 0; i < d.size(); i++) {
+      m.addLocations(makeLocation(d, i, windowStart, windowEnd));
+    }
+  }
+
+  // the location for row i of the table (see makeLocations).
+  public static Ivr8Yni1C9K2Swof.Location makeLocation(
+      OrderTable d, int i, float windowStart, float windowEnd) {
+    return makeLocation(d.id(i), d.x(i), d.y(i), windowStart, windowEnd);
+  }
+
+  // the location every makeLocations overload builds; x is the longitude, y the latitude.
+  public static Ivr8Yni1C9K2Swof.Location makeLocation(
+      String id, float x, float y, float windowStart, float windowEnd) {
+    if (windowEnd == 0.0f && windowStart == 0.0f) {
+      return Ivr8Yni1C9K2Swof.Location.newBuilder()
+          .setId(id)
+          .setGeocode(Ivr8Yni1C9K2Swof.Geocode.newBuilder().setLatitude(y).setLongitude(x))
+          .build();
     }
+    return Ivr8Yni1C9K2Swof.Location.newBuilder()
+        .setId(id)
+        .setGeocode(Ivr8Yni1C9K2Swof.Geocode.newBuilder().setLatitude(y).setLongitude(x))
+        .addAttributes(Ivr8Yni1C9K2Swof.Location.Attribute.newBuilder()
+                           .setDimensionId("time")
+                           .addArrivalWindows(
+                               Ivr8Yni1C9K2Swof.Window.newBuilder().setStart(8 * 60f).setEnd(
+                                   14 * 60f)))
+        .build();
   }
 
   public static void makeLocations(Ivr8Yni1C9K2Swof.Model.Builder m, List<dataRow> d) {
     makeLocations(m, d, 0.0f, 0.0f);
   }
 
+  public static void makeLocations(Ivr8Yni1C9K2Swof.Model.Builder m, OrderTable d) {
+    makeLocations(m, d, 0.0f, 0.0f);
+  }
+
   public static void makeJobTimeCap(Ivr8Yni1C9K2Swof.Model.Builder m, List<dataRow> d,
       List<Integer> srcs, List<Integer> dests) throws Exception {
     if (srcs.size() != dests.size()) {
       throw new Exception("Expected srcs.Count == dests.Count");
     }
     for (int i = 0; i < srcs.size(); i++) {
-      Integer si = srcs.get(i);
-      Integer di = dests.get(i);
-      Ivr8Yni1C9K2Swof.Job.Builder job = Ivr8Yni1C9K2Swof.Job.newBuilder();
-      job.setId("job_" + d.get(di).id);
-      job.setPickupTask(Ivr8Yni1C9K2Swof.Job.Task.newBuilder()
-                            .setTaskId("pickup_" + d.get(di).id)
-                            .setLocationId(d.get(si).id)
-                            .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
-                                               .setDimensionId("time")
-                                               .setQuantity(d.get(di).pickupTime)
-                                               .build())
-                            .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
-                                               .setDimensionId("capacity")
-                                               .setQuantity(d.get(di).quantity)
-                                               .build())
-                            .build());
-
-      job.setDropoffTask(Ivr8Yni1C9K2Swof.Job.Task.newBuilder()
-                             .setTaskId("dropoff_" + d.get(di).id)
-                             .setLocationId(d.get(di).id)
-                             .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
-                                                .setDimensionId("time")
-                                                .setQuantity(d.get(di).dropoffTime)
-                                                .build())
-                             .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
-                                                .setDimensionId("capacity")
-                                                .setQuantity(-d.get(di).quantity)
-                                                .build())
-                             .build());
-      job.setPenalty(10000f);
-      m.addJobs(job.build());
+      dataRow order = d.get(dests.get(i));
+      m.addJobs(makeJob(order.id, d.get(srcs.get(i)).id, order.pickupTime, order.dropoffTime,
+          order.quantity));
+    }
+  }
+
+  public static void makeJobTimeCap(Ivr8Yni1C9K2Swof.Model.Builder m, OrderTable d,
+      List<Integer> srcs, List<Integer> dests) throws Exception {
+    if (srcs.size() != dests.size()) {
+      throw new Exception("Expected srcs.Count == dests.Count");
+    }
+    for (int i = 0; i < srcs.size(); i++) {
+      m.addJobs(makeJob(d, srcs.get(i), dests.get(i)));
     }
   }
 
+  // a job picking up the order in row di at the location in row si and dropping it off at its own
+  // location (see makeJobTimeCap).
+  public static Ivr8Yni1C9K2Swof.Job makeJob(OrderTable d, int si, int di) {
+    return makeJob(d.id(di), d.id(si), d.pickupTime(di), d.dropoffTime(di), d.quantity(di));
+  }
+
+  // the job every makeJobTimeCap overload builds: order id is picked up at location fromId and
+  // dropped off at its own location, id.
+  public static Ivr8Yni1C9K2Swof.Job makeJob(
+      String id, String fromId, float pickupTime, float dropoffTime, float quantity) {
+    Ivr8Yni1C9K2Swof.Job.Builder job = Ivr8Yni1C9K2Swof.Job.newBuilder();
+    job.setId(ivr7helper.JOB_ID_PREFIX + id);
+    job.setPickupTask(Ivr8Yni1C9K2Swof.Job.Task.newBuilder()
+                          .setTaskId(ivr7helper.PICKUP_ID_PREFIX + id)
+                          .setLocationId(fromId)
+                          .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
+                                             .setDimensionId(ivr7helper.JOB_TIME)
+                                             .setQuantity(pickupTime)
+                                             .build())
+                          .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
+                                             .setDimensionId(ivr7helper.JOB_CAPACITY)
+                                             .setQuantity(quantity)
+                                             .build())
+                          .build());
+
+    job.setDropoffTask(Ivr8Yni1C9K2Swof.Job.Task.newBuilder()
+                           .setTaskId(ivr7helper.DROPOFF_ID_PREFIX + id)
+                           .setLocationId(id)
+                           .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
+                                              .setDimensionId(ivr7helper.JOB_TIME)
+                                              .setQuantity(dropoffTime)
+                                              .build())
+                           .addAttributes(Ivr8Yni1C9K2Swof.Job.Task.Attribute.newBuilder()
+                                              .setDimensionId(ivr7helper.JOB_CAPACITY)
+                                              .setQuantity(-quantity)
+                                              .build())
+                           .build());
+    job.setPenalty(ivr7helper.JOB_PENALTY);
+    return job.build();
+  }
+
   public static Ivr8Yni1C9K2Swof.VehicleCostClass makeVccSimple(String name, float fixedcost,
       float time_transit_costcoef, float time_loc_costcoef, float time_task_costcoef,
       float time_slack_costcoef, float distance_transit_costcoef) {
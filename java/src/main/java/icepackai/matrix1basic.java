@@ -4,6 +4,8 @@ import icepackai.Matrix.MatrixVyv95N7Wchpl;
 import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDistanceUnit;
 import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDurationUnit;
 
+import java.nio.FloatBuffer;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -42,40 +44,32 @@ public class matrix1basic {
     builder.setDurationUnit(eDurationUnit.MINUTES);
     builder.setDistanceUnit(eDistanceUnit.KILOMETRES);
 
-    String requestId = api.Post(builder.build()); // send the model to the api
-
-    MatrixVyv95N7Wchpl.MatrixResponse solution =
-        api.Get(requestId); // get the response (which is cast internally)
-    System.out.println("Matrix elements returned: " + solution.getElementsCount());
-    HashMap<String, Integer> idToIndex = new HashMap<String, Integer>();
-    for (int i = 0; i < data.size(); i++) {
-      idToIndex.put(data.get(i).id, i);
-    }
-    Float[][] DM = new Float[data.size()][];
-    Float[][] TM = new Float[data.size()][];
-    for (int i = 0; i < data.size(); i++) {
-      DM[i] = new Float[data.size()]; // make a square matrix
-      TM[i] = new Float[data.size()]; // make a square matrix
-      DM[i][i] = 0f; // set the diagonal to zero
-      TM[i][i] = 0f;
-    }
-    for (int i = 0; i < solution.getElementsCount(); i++) {
-      icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixResponse.Element e = solution.getElements(i);
-      DM[idToIndex.get(e.getFromId())][idToIndex.get(e.getToId())] = e.getDistance();
-      TM[idToIndex.get(e.getFromId())][idToIndex.get(e.getToId())] = e.getDuration();
+    // elements fetched on previous runs are kept in a local cache file, so the client only sends
+    // the pairs it hasn't seen before to the api (and merges the two into one response).
+    DenseTransitMatrix matrix;
+    try (MatrixElementCache cache = new MatrixElementCache(Paths.get(cacheFile))) {
+      MatrixClient client = new MatrixClient(api, cache);
+      matrix = client.getDense(builder.build()); // a square matrix, with the diagonal set to zero
+      System.out.println("Matrix elements from cache: " + client.getLastCachedElements()
+          + ", from the api: " + client.getLastFetchedElements());
     }
-    printMatrix(DM, "Distance matrix");
-    printMatrix(TM, "Distance matrix");
+    // save the matrix in a binary file which other processes can map straight back in (rather than
+    // requesting it again); the printout below is read back from that file.
+    MatrixFile.write(matrix, Paths.get(matrixFile));
+    matrix = MatrixFile.read(Paths.get(matrixFile));
+    printMatrix(matrix, false, "Distance matrix");
+    printMatrix(matrix, true, "Duration matrix");
   }
 
-  private void printMatrix(Float[][] matrix, String name) {
+  private void printMatrix(DenseTransitMatrix matrix, boolean durations, String name) {
     System.out.println(name + ":");
-    int rows = matrix.length;
+    int rows = matrix.size();
     for (int i = 0; i < rows; i++) {
       StringBuilder sb = new StringBuilder();
-      int columns = matrix[i].length;
+      FloatBuffer row = durations ? matrix.durationRow(i) : matrix.distanceRow(i);
+      int columns = row.limit();
       for (int j = 0; j < columns; j++) {
-        sb.append(String.format("|%02f", matrix[i][j]));
+        sb.append(String.format("|%02f", row.get(j)));
       }
       sb.append("|");
       System.out.println(sb.toString());
@@ -86,5 +80,7 @@ public class matrix1basic {
   private apiHelper<MatrixVyv95N7Wchpl.MatrixResponse> api;
 
   private String configFile;
+  private String cacheFile = "../matrix_cache.bin";
+  private String matrixFile = "../matrix1basic.mtx";
   private List<dataRow> data;
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import icepackai.Matrix.MatrixVyv95N7Wchpl;
 import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDistanceUnit;
 import icepackai.Matrix.MatrixVyv95N7Wchpl.MatrixRequest.eDurationUnit;
 
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -52,10 +53,15 @@ public class matrix1intermediate {
     builder.setDurationUnit(eDurationUnit.MINUTES);
     builder.setDistanceUnit(eDistanceUnit.KILOMETRES);
 
-    String requestId = api.Post(builder.build()); // send the model to the api
-
-    MatrixVyv95N7Wchpl.MatrixResponse solution =
-        api.Get(requestId); // get the response (which is cast internally)
+    // elements fetched on previous runs are kept in a local cache file, so the client only sends
+    // the pairs it hasn't seen before to the api (and merges the two into one response).
+    MatrixVyv95N7Wchpl.MatrixResponse solution;
+    try (MatrixElementCache cache = new MatrixElementCache(Paths.get(cacheFile))) {
+      MatrixClient client = new MatrixClient(api, cache);
+      solution = client.get(builder.build());
+      System.out.println("Matrix elements from cache: " + client.getLastCachedElements()
+          + ", from the api: " + client.getLastFetchedElements());
+    }
     System.out.println("Matrix elements returned: " + solution.getElementsCount());
     // We'll write this one out in long form.
 
@@ -73,5 +79,6 @@ public class matrix1intermediate {
   private apiHelper<MatrixVyv95N7Wchpl.MatrixResponse> api;
 
   private String configFile;
+  private String cacheFile = "../matrix_cache.bin";
   private List<dataRow> data;
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import icepackai.NS3.Ns3Tbfvuwtge2Iq;
 import icepackai.NS3.Ns3Tbfvuwtge2Iq.SolveRequest.SolveType;
 import icepackai.NS3.Ns3Tbfvuwtge2Iq.SolveRequest.GeometryOutput;
 
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -61,6 +62,10 @@ public class ns3_3_advanced {
   public void Run() throws Exception {
     api = new apiHelper<Ns3Tbfvuwtge2Iq.SolutionResponse>(
         Ns3Tbfvuwtge2Iq.SolutionResponse.class, "ns3-tbfvuwtge2iq", configFile);
+    // this one can take a while to solve. The journal records the request until it's done, so if
+    // the process is restarted half way, posting the same model again just picks up the request
+    // that's already running instead of starting from scratch.
+    api.Journal = new RequestJournal(Paths.get(journalFile));
     // so here we're going to build the model
 
     // create a solve request
@@ -199,5 +204,6 @@ public class ns3_3_advanced {
   private apiHelper<Ns3Tbfvuwtge2Iq.SolutionResponse> api;
 
   private String configFile;
+  private String journalFile = "../request_journal.txt";
   private List<dataRow> data;
 }
\ No newline at end of file
@@ -36,10 +36,17 @@ public class ns3helper {
   }
 
   public static List<Ns3Tbfvuwtge2Iq.Node> makeNodes(List<dataRow> rows) {
-    List<Ns3Tbfvuwtge2Iq.Node> nodes = new ArrayList<Ns3Tbfvuwtge2Iq.Node>();
+    List<Ns3Tbfvuwtge2Iq.Node> nodes = new ArrayList<Ns3Tbfvuwtge2Iq.Node>(rows.size());
+    for (dataRow r : rows) {
+      nodes.add(makeNode(r.id, r.X, r.Y));
+    }
+    return nodes;
+  }
+
+  public static List<Ns3Tbfvuwtge2Iq.Node> makeNodes(OrderTable rows) {
+    List<Ns3Tbfvuwtge2Iq.Node> nodes = new ArrayList<Ns3Tbfvuwtge2Iq.Node>(rows.size());
     for (int i = 0; i < rows.size(); i++) {
-      dataRow loc = rows.get(i);
-      nodes.add(makeNode(loc.id, loc.X, loc.Y));
+      nodes.add(makeNode(rows.id(i), rows.x(i), rows.y(i)));
     }
     return nodes;
   }
@@ -69,6 +76,18 @@ public class ns3helper {
         .build();
   }
 
+  // the same, with the ids (and the "lr:"/"->" parts of the lane id) taken from ids, for models
+  // with many lanes between the same sites.
+  public static Ns3Tbfvuwtge2Iq.LaneRate make_lane_rate_distance(
+      IdPool ids, String src, String dest, float costperkm) {
+    Ns3Tbfvuwtge2Iq.LaneRate.Builder lr = Ns3Tbfvuwtge2Iq.LaneRate.newBuilder();
+    return lr.setIdBytes(ids.join("lr:", src, "->", dest))
+        .setSourceBytes(ids.get(src))
+        .setDestinationBytes(ids.get(dest))
+        .addUnitDimensionCosts(make_udc("distance", 1.0f, costperkm))
+        .build();
+  }
+
   public static Ns3Tbfvuwtge2Iq.LaneRate make_lane_rate_distance_weight(
       String src, String dest, float costperkm, String weightdim, float costperunit) {
     Ns3Tbfvuwtge2Iq.LaneRate.Builder lr = Ns3Tbfvuwtge2Iq.LaneRate.newBuilder();
@@ -82,6 +101,19 @@ public class ns3helper {
     return lr.build();
   }
 
+  public static Ns3Tbfvuwtge2Iq.LaneRate make_lane_rate_distance_weight(IdPool ids, String src,
+      String dest, float costperkm, String weightdim, float costperunit) {
+    Ns3Tbfvuwtge2Iq.LaneRate.Builder lr = Ns3Tbfvuwtge2Iq.LaneRate.newBuilder();
+    lr = lr.setIdBytes(ids.join("lr:", src, "->", dest))
+             .setSourceBytes(ids.get(src))
+             .setDestinationBytes(ids.get(dest))
+             .addUnitDimensionCosts(make_udc(weightdim, 1.0f, costperunit));
+    if (costperkm != 0.0f) {
+      return lr.addUnitDimensionCosts(make_udc("distance", 1.0f, costperkm)).build();
+    }
+    return lr.build();
+  }
+
   public static Ns3Tbfvuwtge2Iq.ProductGroup make_simple_product_group(String product) {
     Ns3Tbfvuwtge2Iq.ProductGroup.Builder pg = Ns3Tbfvuwtge2Iq.ProductGroup.newBuilder();
     return pg.setProductId(product).setProductGroupId(product).build();
@@ -92,7 +124,7 @@ public class ns3helper {
     return cm.setId("costmodel: " + src + ":Beer")
         .setSource(src)
         .addProductGroupIds("Beer")
-        .addUnitDimensionCost(make_udc("distance", 1.0f, costperkm))
+        .addUnitDimensionCosts(make_udc("distance", 1.0f, costperkm))
         .build();
   }
 
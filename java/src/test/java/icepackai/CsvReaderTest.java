@@ -0,0 +1,185 @@
+package icepackai;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+// CsvReader.parseFloat takes a shortcut for plain decimals, and has to give exactly what
+// Float.parseFloat gives for everything, shortcut or not.
+public class CsvReaderTest extends TestCase {
+  public void testPlainDecimals() {
+    assertParses("1", "0.5", "53.3418", "-6.2870", "+6.2870", "123456.789", ".5", "5.", "007",
+        " 12.5 ", "1e3", "1.5E-3", "2.5e+2", "340282346638528859811704183484516925440",
+        "3.4028235e38", "1.17549435E-38");
+  }
+
+  public void testSignAndZero() {
+    assertParses("0", "-0", "+0", "0.000", "-0.0", "0e5", "-0e-5", "000.000");
+    assertEquals(Float.floatToRawIntBits(-0f), Float.floatToRawIntBits(parse("-0.0")));
+    assertEquals(Float.floatToRawIntBits(0f), Float.floatToRawIntBits(parse("0.0")));
+  }
+
+  // narrowing the correctly rounded double to float rounds twice; when the double lands exactly
+  // half way between two floats the second rounding can go the wrong way, so those go to the jdk.
+  public void testHalfWayBetweenFloats() {
+    // 2^24 + 1: exactly half way, ties to even.
+    assertParses("16777217", "-16777217", "33554434");
+    // just above half way, but the nearest double is the half way point: (float) of the double
+    // gives 0.001953125.
+    assertEquals(0.0019531252f, parse("0.001953125116415322"));
+    assertParses("0.001953125116415322", "0.000976562558207661", "-0.00012207031977595762");
+  }
+
+  public void testMoreThan18Digits() {
+    assertParses("1234567890123456789", "0.1234567890123456789", "1.00000000000000000001",
+        "99999999999999999999999", "0.000000000000000000000000000001",
+        "1.000000059604644775390625", "9007199254740993", "-9223372036854775808");
+  }
+
+  public void testExponentsBeyond22() {
+    assertParses("1e23", "1e-23", "1.5e30", "1.5e-30", "1e38", "1e39", "1e-45", "1e-46", "1e-50",
+        "123456e-30", "1e100000", "1e-100000", "0.0000000000000000000000001");
+    assertEquals(Float.POSITIVE_INFINITY, parse("1e39"));
+    assertEquals(0f, parse("1e-50"));
+  }
+
+  public void testNonDecimals() {
+    assertParses("NaN", "Infinity", "-Infinity", "0x1p3", "1f", "2.5d");
+    for (String s : new String[] {"", " ", "-", "1e", "1e+", "abc", "1,5", "1.2.3", "e5"}) {
+      try {
+        parse(s);
+        fail("expected \"" + s + "\" to be rejected");
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  // a spread of random decimals of the kind the csv files hold, against the jdk.
+  public void testRandomDecimals() {
+    Random r = new Random(42);
+    for (int n = 0; n < 100000; n++) {
+      int digits = 1 + r.nextInt(17);
+      StringBuilder s = new StringBuilder(r.nextBoolean() ? "-" : "");
+      for (int i = 0; i < digits; i++) {
+        s.append((char) ('0' + r.nextInt(10)));
+      }
+      s.insert(s.length() - r.nextInt(digits), '.');
+      if (r.nextInt(4) == 0) {
+        s.append('e').append(r.nextInt(61) - 30);
+      }
+      assertParses(s.toString());
+    }
+  }
+
+  public void testCrlfAndBlankLines() throws Exception {
+    Path file = csv("ID, \"X\" ,Y\r\n\r\nA,1.5,-2\r\n\r\n\nB,3,4.25\r\n\n");
+    try (CsvReader csv = new CsvReader(file)) {
+      assertTrue(Arrays.equals(new String[] {"ID", "X", "Y"}, csv.getHeader()));
+      assertEquals(1, csv.column("missing", "x"));
+      assertTrue(csv.next());
+      assertEquals("A", csv.getString(0));
+      assertEquals(1.5f, csv.getFloat(1));
+      assertEquals(-2f, csv.getFloat(2)); // no '\r' left on the last field
+      assertEquals(3, csv.lineNumber());
+      assertTrue(csv.next());
+      assertEquals("B", csv.getString(0));
+      assertEquals(4.25f, csv.getFloat(2));
+      assertEquals(6, csv.lineNumber());
+      assertFalse(csv.next());
+      assertFalse(csv.next());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  public void testLastLineWithoutNewline() throws Exception {
+    Path file = csv("id,x\na,1\nb,2");
+    try (CsvReader csv = new CsvReader(file)) {
+      assertTrue(csv.next());
+      assertTrue(csv.next());
+      assertEquals("b", csv.getString(0));
+      assertEquals(2f, csv.getFloat(1));
+      assertFalse(csv.next());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  // longer than the read buffer, so lines straddle refills and one has to grow it.
+  public void testLinesAcrossBufferRefills() throws Exception {
+    StringBuilder s = new StringBuilder("id,x,y\r\n");
+    for (int i = 0; i < 20000; i++) {
+      s.append("row").append(i).append(',').append(i * 0.25).append(',').append(-i).append("\r\n");
+    }
+    char[] wide = new char[200 * 1024];
+    Arrays.fill(wide, 'w');
+    s.append(wide).append(",1,2\r\n");
+    Path file = csv(s.toString());
+    try (CsvReader csv = new CsvReader(file)) {
+      for (int i = 0; i < 20000; i++) {
+        assertTrue(csv.next());
+        assertEquals("row" + i, csv.getString(0));
+        assertEquals((float) (i * 0.25), csv.getFloat(1));
+        assertEquals((float) -i, csv.getFloat(2));
+      }
+      assertTrue(csv.next());
+      assertEquals(wide.length, csv.getString(0).length());
+      assertEquals(2f, csv.getFloat(2));
+      assertFalse(csv.next());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  public void testMissingField() throws Exception {
+    Path file = csv("id,x,y\na,1\n");
+    try (CsvReader csv = new CsvReader(file)) {
+      assertTrue(csv.next());
+      assertEquals(2, csv.fieldCount());
+      try {
+        csv.getFloat(2);
+        fail("expected the missing field to be reported");
+      } catch (IOException e) {
+        assertTrue(e.getMessage().contains("line 2"));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  public void testEmptyFile() throws Exception {
+    Path file = csv("");
+    try {
+      new CsvReader(file).close();
+      fail("expected the empty file to be reported");
+    } catch (IOException e) {
+      // expected
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static float parse(String s) {
+    // padded either side, so the offsets are exercised too.
+    byte[] b = ("x," + s + ",y").getBytes(StandardCharsets.UTF_8);
+    return CsvReader.parseFloat(b, 2, b.length - 2);
+  }
+
+  private static void assertParses(String... values) {
+    for (String s : values) {
+      assertEquals(s, Float.floatToRawIntBits(Float.parseFloat(s)),
+          Float.floatToRawIntBits(parse(s)));
+    }
+  }
+
+  private static Path csv(String contents) throws IOException {
+    Path file = Files.createTempFile("csvreader", ".csv");
+    Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
@@ -0,0 +1,200 @@
+package icepackai;
+
+import icepackai.IVR7.Ivr7Kt461V8Eoaif;
+import icepackai.IVRData.IvrdataO43E0Dvs78Zq;
+import icepackai.problem.Problem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import com.google.protobuf.ByteString;
+import junit.framework.TestCase;
+
+// ModelWriter encodes locations, jobs and transit sets by hand, so these check it against the
+// messages ivr7helper and TransitSetBuilder build: written in field order, the bytes must be
+// exactly Model.toByteArray's.
+public class ModelWriterTest extends TestCase {
+  public void testLocationsAndJobsMatchTheHelpers() throws Exception {
+    OrderTable table = table(50);
+    Ivr7Kt461V8Eoaif.Model.Builder model = Ivr7Kt461V8Eoaif.Model.newBuilder();
+    ivr7helper.makeDistanceTimeCapDims(model);
+    ivr7helper.makeLocations(model, table);
+    ivr7helper.makeJobTimeCap(model, table, srcs(table), dests(table));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ModelWriter w = new ModelWriter(bytes)) {
+      w.writeDimensions(model.getDimensions());
+      w.writeLocations(table);
+      w.writeJobs(table, srcs(table), dests(table));
+    }
+    assertTrue(Arrays.equals(model.buildPartial().toByteArray(), bytes.toByteArray()));
+  }
+
+  public void testWindowedLocationsMatchTheHelpers() throws Exception {
+    OrderTable table = table(10);
+    Ivr7Kt461V8Eoaif.Model.Builder model = Ivr7Kt461V8Eoaif.Model.newBuilder();
+    ivr7helper.makeDistanceTimeCapDims(model);
+    ivr7helper.makeLocations(model, table, 8 * 60f, 14 * 60f);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ModelWriter w = new ModelWriter(bytes)) {
+      w.writeDimensions(model.getDimensions());
+      w.writeLocations(table, 8 * 60f, 14 * 60f);
+    }
+    assertTrue(Arrays.equals(model.buildPartial().toByteArray(), bytes.toByteArray()));
+  }
+
+  public void testWholeModelMatchesToByteArray() throws Exception {
+    OrderTable table = table(30);
+    TransitSetBuilder transits = new TransitSetBuilder();
+    for (int i = 0; i < table.size(); i++) {
+      transits.put(table.id(i), table.id((i * 7 + 3) % table.size()), i * 1.5f);
+    }
+    Ivr7Kt461V8Eoaif.Model model = model(table, transits);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ModelWriter w = new ModelWriter(bytes)) {
+      writeModel(w, table, transits);
+    }
+    assertTrue(Arrays.equals(model.toByteArray(), bytes.toByteArray()));
+    assertEquals(model, Ivr7Kt461V8Eoaif.Model.parser().parsePartialFrom(bytes.toByteArray()));
+  }
+
+  public void testWithoutDimensionsIsAnError() throws Exception {
+    ModelWriter w = new ModelWriter(new ByteArrayOutputStream());
+    w.writeLocation("depot", 1, 2);
+    try {
+      w.close();
+      fail("expected the missing dimensions to be reported");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testSolveRequestFromAFile() throws Exception {
+    OrderTable table = table(20);
+    TransitSetBuilder transits = new TransitSetBuilder();
+    Path file = written(table, transits);
+    try {
+      Ivr7Kt461V8Eoaif.SolveRequest rest = Ivr7Kt461V8Eoaif.SolveRequest.newBuilder()
+                                               .setModelID("model-1")
+                                               .setSolveType(
+                                                   Ivr7Kt461V8Eoaif.SolveRequest.SolveType.Evaluate)
+                                               .buildPartial();
+      Ivr7Kt461V8Eoaif.SolveRequest request =
+          rest.toBuilder().setModel(model(table, transits)).buildPartial();
+
+      HttpTransport.BodyWriter body = ModelWriter.solveRequest(file, rest);
+      assertBody(request.toByteArray(), body);
+      // and inside the envelope, the same bytes EnvelopeCodec writes for the message itself.
+      assertBody(bytes(EnvelopeCodec.input("ivr7-kt461v8eoaif", request)),
+          EnvelopeCodec.input("ivr7-kt461v8eoaif", body));
+      Problem.ProblemEnvelope envelope = Problem.ProblemEnvelope.parseFrom(
+          bytes(EnvelopeCodec.input("ivr7-kt461v8eoaif", body)));
+      assertEquals(request.toByteString(), envelope.getContent());
+      // and the cache/journal key is the message's.
+      assertEquals(ContentHash.of("ivr7-kt461v8eoaif", request),
+          ContentHash.of("ivr7-kt461v8eoaif", body));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  public void testCachedModelFromAFile() throws Exception {
+    OrderTable table = table(20);
+    TransitSetBuilder transits = new TransitSetBuilder();
+    Path file = written(table, transits);
+    try {
+      IvrdataO43E0Dvs78Zq.CachedModel cached =
+          IvrdataO43E0Dvs78Zq.CachedModel.newBuilder()
+              .setModel(ByteString.copyFrom(Files.readAllBytes(file)))
+              .build();
+      assertBody(cached.toByteArray(), ModelWriter.cachedModel(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  // rows with a depot, repeated coordinates and ids that aren't plain ascii.
+  private static OrderTable table(int n) {
+    OrderTable table = new OrderTable();
+    table.add("depot", -6.2870f, 53.3418f, 0, 0, 0);
+    for (int i = 1; i < n; i++) {
+      String id = (i % 3 == 0 ? "caf\u00e9-" : "order-") + i;
+      table.add(id, -6.2f - i * 0.001f, 53.3f + (i % 5) * 0.01f, i % 4, i % 6 + 0.5f, i * 2.25f);
+    }
+    return table;
+  }
+
+  // every order picked up at the depot.
+  private static List<Integer> srcs(OrderTable table) {
+    return Collections.nCopies(table.size() - 1, 0);
+  }
+
+  private static List<Integer> dests(OrderTable table) {
+    List<Integer> dests = new ArrayList<Integer>();
+    for (int i = 1; i < table.size(); i++) {
+      dests.add(i);
+    }
+    return dests;
+  }
+
+  private static Ivr7Kt461V8Eoaif.Model model(OrderTable table, TransitSetBuilder transits)
+      throws Exception {
+    Ivr7Kt461V8Eoaif.Model.Builder model = Ivr7Kt461V8Eoaif.Model.newBuilder();
+    ivr7helper.makeDistanceTimeCapDims(model);
+    ivr7helper.makeLocations(model, table);
+    ivr7helper.makeJobTimeCap(model, table, srcs(table), dests(table));
+    model.addVehicles(ivr7helper.makeVehicleCap(
+        "vehicle_0", "vc1", "vcc1", 100, "depot", "depot", 7 * 60f, 18 * 60f));
+    model.addVehicleClasses(ivr7helper.makeVcSimple("vc1", 1, 1, 1, 1));
+    model.addVehicleCostClasses(ivr7helper.makeVccSimple("vcc1", 1000, 0.01f, 0.01f, 0.01f, 1, 3));
+    model.addTransitRules(ivr7helper.makeLunchBreakRule("lunch", "lunch_", 12 * 60f, 30f));
+    model.addTransitGenerators(Ivr7Kt461V8Eoaif.TransitGenerator.newBuilder()
+                                   .setId("overrides")
+                                   .setTransitSet(transits.buildModelTransitSet()));
+    return model.buildPartial();
+  }
+
+  // the same model, record by record in field order.
+  private static void writeModel(ModelWriter w, OrderTable table, TransitSetBuilder transits)
+      throws Exception {
+    Ivr7Kt461V8Eoaif.Model.Builder dims = Ivr7Kt461V8Eoaif.Model.newBuilder();
+    ivr7helper.makeDistanceTimeCapDims(dims);
+    w.writeDimensions(dims.getDimensions());
+    w.writeLocations(table);
+    w.writeJobs(table, srcs(table), dests(table));
+    w.writeVehicle(ivr7helper.makeVehicleCap(
+        "vehicle_0", "vc1", "vcc1", 100, "depot", "depot", 7 * 60f, 18 * 60f));
+    w.writeVehicleClass(ivr7helper.makeVcSimple("vc1", 1, 1, 1, 1));
+    w.writeVehicleCostClass(ivr7helper.makeVccSimple("vcc1", 1000, 0.01f, 0.01f, 0.01f, 1, 3));
+    w.writeTransitRule(ivr7helper.makeLunchBreakRule("lunch", "lunch_", 12 * 60f, 30f));
+    w.writeTransitGenerator("overrides", transits);
+  }
+
+  private static Path written(OrderTable table, TransitSetBuilder transits) throws Exception {
+    Path file = Files.createTempFile("model", ".bin");
+    try (ModelWriter w = ModelWriter.create(file)) {
+      writeModel(w, table, transits);
+    }
+    return file;
+  }
+
+  private static void assertBody(byte[] expected, HttpTransport.BodyWriter body)
+      throws IOException {
+    byte[] actual = bytes(body);
+    assertEquals(expected.length, body.length());
+    assertTrue(Arrays.equals(expected, actual));
+    // retries write the body again, so it has to come out the same the second time.
+    assertTrue(Arrays.equals(expected, bytes(body)));
+  }
+
+  private static byte[] bytes(HttpTransport.BodyWriter body) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    body.writeTo(os);
+    return os.toByteArray();
+  }
+}